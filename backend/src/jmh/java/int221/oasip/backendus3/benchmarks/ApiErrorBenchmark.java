@@ -0,0 +1,32 @@
+package int221.oasip.backendus3.benchmarks;
+
+import int221.oasip.backendus3.dtos.ApiError;
+import int221.oasip.backendus3.exceptions.FieldNotValidException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpStatus;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the error body of a rejected request, without the serialization
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApiErrorBenchmark {
+    private final FieldNotValidException fieldNotValid =
+            new FieldNotValidException("eventStartTime", "Event start time overlaps with other events");
+
+    @Benchmark
+    public ApiError status() {
+        return new ApiError(HttpStatus.NOT_FOUND, "Event not found");
+    }
+
+    @Benchmark
+    public ApiError fieldNotValid() {
+        return ApiError.fromException(fieldNotValid);
+    }
+}
@@ -0,0 +1,104 @@
+package int221.oasip.backendus3.benchmarks;
+
+import com.azure.spring.cloud.autoconfigure.aad.AadTrustedIssuerRepository;
+import int221.oasip.backendus3.services.auth.AadJwtUtil;
+import int221.oasip.backendus3.services.auth.AuthStatus;
+import int221.oasip.backendus3.services.auth.AuthUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link AuthUtil#getAuthStatus()} calls made by one event request: the controller,
+ * the authorization check, the filter parameters and the owner check.
+ * Compare resolving the status on every call, as before, with resolving it once per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthStatusBenchmark {
+    private static final int CALLS_PER_REQUEST = 4;
+
+    private final AadJwtUtil aadJwtUtil = new AadJwtUtil(new AadTrustedIssuerRepository("00000000-0000-0000-0000-000000000000"));
+    private final AuthUtil authUtil = new AuthUtil(aadJwtUtil);
+    private ServletRequestAttributes requestAttributes;
+
+    @Setup
+    public void setUp() {
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "HS256")
+                .issuer("https://intproj21.sit.kmutt.ac.th/us3/api/auth")
+                .subject("somchai.jaid@mail.kmutt.ac.th")
+                .claim("email", "somchai.jaid@mail.kmutt.ac.th")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(3600))
+                .build();
+        Authentication authentication = new JwtAuthenticationToken(jwt,
+                AuthorityUtils.createAuthorityList("SCOPE_openid", "SCOPE_profile", "SCOPE_email", "ROLE_STUDENT"));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+
+        requestAttributes = new ServletRequestAttributes(new MockHttpServletRequest());
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public void resolvedOnEveryCall(Blackhole blackhole) {
+        for (int i = 0; i < CALLS_PER_REQUEST; i++) {
+            blackhole.consume(legacyGetAuthStatus());
+        }
+    }
+
+    @Benchmark
+    public void resolvedOncePerRequest(Blackhole blackhole) {
+        RequestContextHolder.setRequestAttributes(requestAttributes);
+        for (int i = 0; i < CALLS_PER_REQUEST; i++) {
+            blackhole.consume(authUtil.getAuthStatus());
+        }
+        requestAttributes.removeAttribute(AuthStatus.class.getName(), ServletRequestAttributes.SCOPE_REQUEST);
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    /**
+     * {@code AuthUtil.getAuthStatus()} before the status was cached, three passes over the authorities per call
+     */
+    private Object[] legacyGetAuthStatus() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Jwt jwt = (Jwt) authentication.getPrincipal();
+        String email = aadJwtUtil.isAadToken(jwt) ? aadJwtUtil.getEmail(jwt) : jwt.getClaimAsString("email");
+
+        boolean isAdmin = hasAnyAuthority(authentication, "ROLE_ADMIN", "APPROLE_Admin");
+        boolean isLecturer = hasAnyAuthority(authentication, "ROLE_LECTURER", "APPROLE_Lecturer");
+        boolean isStudent = hasAnyAuthority(authentication, "ROLE_STUDENT", "APPROLE_Student");
+        boolean isGuest = !isAdmin && !isLecturer && !isStudent;
+        return new Object[]{isAdmin, isLecturer, isStudent, isGuest, email, authentication};
+    }
+
+    private static boolean hasAnyAuthority(Authentication authentication, String... authorities) {
+        return authentication != null && authentication.getAuthorities().stream().anyMatch(a -> {
+            for (String authority : authorities) {
+                if (a.getAuthority().equals(authority)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+}
@@ -0,0 +1,92 @@
+package int221.oasip.backendus3.benchmarks;
+
+import int221.oasip.backendus3.dtos.EventResponse;
+import int221.oasip.backendus3.dtos.FileInfoResponse;
+import int221.oasip.backendus3.dtos.UserResponse;
+import int221.oasip.backendus3.entities.*;
+import int221.oasip.backendus3.mappers.EventMapper;
+import int221.oasip.backendus3.mappers.UserMapper;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compare the mappers with the reflective {@link ModelMapper} they replaced
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final EventMapper eventMapper = new EventMapper();
+    private final UserMapper userMapper = new UserMapper();
+    private Event event;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        EventCategory category = new EventCategory();
+        category.setId(1);
+        category.setEventCategoryName("Project Management Clinic");
+        category.setEventDuration(30);
+
+        event = new Event(category, "Somchai Jaidee", "somchai.jaid@mail.kmutt.ac.th", Instant.parse("2022-05-23T06:30:00Z"), "notes");
+        event.setId(1);
+        File file = new File();
+        file.setId(1);
+        file.setBucketId("c5f1e5b0-3b9a-4a3e-9c3b-7d1a2f6c8e10");
+        file.setName("slides.pdf");
+        file.setType("application/pdf");
+        file.setEvent(event);
+        event.getFiles().add(file);
+
+        user = new User();
+        user.setId(1);
+        user.setName("Somchai Jaidee");
+        user.setEmail("somchai.jaid@mail.kmutt.ac.th");
+        user.setRole(Role.STUDENT);
+        user.setCreatedOn(Instant.parse("2022-05-01T00:00:00Z"));
+        user.setUpdatedOn(Instant.parse("2022-05-01T00:00:00Z"));
+
+        // type maps are created on first use, do not measure it
+        modelMapperEvent();
+        modelMapperUser();
+    }
+
+    @Benchmark
+    public EventResponse modelMapperEvent() {
+        // the same steps as the former EventService.mapEventToEventResponse
+        EventResponse response = modelMapper.map(event, EventResponse.class);
+        List<FileInfoResponse> files = event.getFiles().stream().map(file -> {
+            FileInfoResponse info = new FileInfoResponse();
+            info.setBucketId(file.getBucketId());
+            info.setName(file.getName());
+            info.setType(file.getType());
+            return info;
+        }).collect(Collectors.toList());
+        response.setFiles(files);
+        return response;
+    }
+
+    @Benchmark
+    public EventResponse eventMapper() {
+        return eventMapper.toResponse(event);
+    }
+
+    @Benchmark
+    public UserResponse modelMapperUser() {
+        return modelMapper.map(user, UserResponse.class);
+    }
+
+    @Benchmark
+    public UserResponse userMapper() {
+        return userMapper.toResponse(user);
+    }
+}
@@ -0,0 +1,132 @@
+package int221.oasip.backendus3.benchmarks;
+
+import int221.oasip.backendus3.configs.BookingAdmissionProps;
+import int221.oasip.backendus3.entities.Event;
+import int221.oasip.backendus3.entities.EventCategory;
+import int221.oasip.backendus3.repository.CustomEventRepositoryImpl;
+import int221.oasip.backendus3.services.booking.EventIntervalIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.*;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one overlap check when booking an event: the in-memory {@link EventIntervalIndex}
+ * against the indexed query the repository sends to the database, run on an in-memory H2 database
+ * with the same table layout as {@code 00-schema.sql}, including the generated {@code eventEndTime}.
+ * <p>The probes are random, about half of them overlap an existing event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OverlapBenchmark {
+    private static final int CATEGORIES = 5;
+    private static final int PROBES = 1024;
+    private static final Instant FIRST_START = Instant.parse("2022-05-23T00:00:00Z");
+
+    @Param({"1000", "10000"})
+    private int events;
+
+    // load() is never called, so the repository is not used
+    private final EventIntervalIndex index = new EventIntervalIndex(null, new BookingAdmissionProps());
+    private Connection connection;
+    private PreparedStatement overlapQuery;
+    private final int[] probeCategories = new int[PROBES];
+    private final Instant[] probeStarts = new Instant[PROBES];
+    private final Instant[] probeEnds = new Instant[PROBES];
+    private int probe;
+
+    @Setup
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:overlap;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS event");
+            statement.execute("CREATE TABLE event (" +
+                    "eventId INT NOT NULL PRIMARY KEY, " +
+                    "eventStartTime TIMESTAMP NOT NULL, " +
+                    "eventDuration INT NOT NULL, " +
+                    "eventCategoryId INT NOT NULL, " +
+                    "eventEndTime TIMESTAMP GENERATED ALWAYS AS (DATEADD(MINUTE, eventDuration, eventStartTime)))");
+            statement.execute("CREATE INDEX event_category_time_idx ON event (eventCategoryId, eventStartTime, eventEndTime)");
+        }
+
+        Random random = new Random(42);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO event (eventId, eventStartTime, eventDuration, eventCategoryId) VALUES (?, ?, ?, ?)")) {
+            Instant[] nextStart = new Instant[CATEGORIES + 1];
+            for (int id = 1; id <= events; id++) {
+                int categoryId = id % CATEGORIES + 1;
+                int duration = 15 + random.nextInt(4) * 15;
+                Instant start = nextStart[categoryId] == null ? FIRST_START : nextStart[categoryId];
+                Instant end = start.plus(duration, ChronoUnit.MINUTES);
+                // leave a gap as long as the event after it, so about half of the probes are free
+                nextStart[categoryId] = end.plus(duration, ChronoUnit.MINUTES);
+
+                insert.setInt(1, id);
+                insert.setTimestamp(2, Timestamp.from(start));
+                insert.setInt(3, duration);
+                insert.setInt(4, categoryId);
+                insert.addBatch();
+                index.put(newEvent(id, categoryId, start, duration));
+            }
+            insert.executeBatch();
+        }
+
+        long span = (long) events / CATEGORIES * 90;
+        for (int i = 0; i < PROBES; i++) {
+            probeCategories[i] = random.nextInt(CATEGORIES) + 1;
+            probeStarts[i] = FIRST_START.plus(random.nextInt((int) span), ChronoUnit.MINUTES);
+            probeEnds[i] = probeStarts[i].plus(30, ChronoUnit.MINUTES);
+        }
+
+        // the statement Hibernate renders for CustomEventRepositoryImpl.existsOverlapEventsByCategoryId,
+        // with the lower bound on eventStartTime that keeps the index range short
+        overlapQuery = connection.prepareStatement("SELECT eventId FROM event " +
+                "WHERE eventCategoryId = ? AND eventStartTime > ? AND eventEndTime > ? AND eventStartTime < ? LIMIT 1");
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        overlapQuery.close();
+        connection.close();
+    }
+
+    @Benchmark
+    public boolean intervalIndex() {
+        int i = nextProbe();
+        return index.overlaps(probeCategories[i], probeStarts[i], probeEnds[i], null);
+    }
+
+    @Benchmark
+    public boolean database() throws SQLException {
+        int i = nextProbe();
+        overlapQuery.setInt(1, probeCategories[i]);
+        overlapQuery.setTimestamp(2, Timestamp.from(probeStarts[i].minus(CustomEventRepositoryImpl.MAX_EVENT_DURATION_MINUTES, ChronoUnit.MINUTES)));
+        overlapQuery.setTimestamp(3, Timestamp.from(probeStarts[i]));
+        overlapQuery.setTimestamp(4, Timestamp.from(probeEnds[i]));
+        try (ResultSet resultSet = overlapQuery.executeQuery()) {
+            return resultSet.next();
+        }
+    }
+
+    private int nextProbe() {
+        probe = (probe + 1) & (PROBES - 1);
+        return probe;
+    }
+
+    private static Event newEvent(int id, int categoryId, Instant start, int duration) {
+        EventCategory category = new EventCategory();
+        category.setId(categoryId);
+        category.setEventDuration(duration);
+
+        Event event = new Event(category, "Somchai Jaidee", "somchai.jaid@mail.kmutt.ac.th", start, null);
+        event.setId(id);
+        return event;
+    }
+}
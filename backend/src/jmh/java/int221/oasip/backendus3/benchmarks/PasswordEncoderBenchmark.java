@@ -0,0 +1,45 @@
+package int221.oasip.backendus3.benchmarks;
+
+import int221.oasip.backendus3.services.password.Argon2Calibrator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of checking a password at login, with Spring's default Argon2 costs and with the lower bounds
+ * of the calibration in {@code PasswordProps}, written as {@code memory KiB:iterations}.
+ * A mismatch costs as much as a match, Argon2 always runs in full.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasswordEncoderBenchmark {
+    private static final String PASSWORD = "oasip-password";
+
+    @Param({"4096:3", "16384:2"})
+    private String costs;
+
+    private Argon2PasswordEncoder passwordEncoder;
+    private String encodedPassword;
+
+    @Setup
+    public void setUp() {
+        String[] memoryAndIterations = costs.split(":");
+        passwordEncoder = Argon2Calibrator.createEncoder(Integer.parseInt(memoryAndIterations[0]), Integer.parseInt(memoryAndIterations[1]));
+        encodedPassword = passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return passwordEncoder.matches(PASSWORD, encodedPassword);
+    }
+
+    @Benchmark
+    public boolean mismatches() {
+        return passwordEncoder.matches("wrong-password", encodedPassword);
+    }
+}
@@ -0,0 +1,46 @@
+package int221.oasip.backendus3.benchmarks;
+
+import int221.oasip.backendus3.configs.OasipJwtProps;
+import int221.oasip.backendus3.services.TokenService;
+import int221.oasip.backendus3.services.jwt.UserClaims;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of signing a token at login and refresh, and of decoding it on every authenticated request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenServiceBenchmark {
+    private static final long MAX_AGE_SECONDS = 3600L;
+
+    private TokenService tokenService;
+    private UserClaims claims;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        OasipJwtProps jwtProps = new OasipJwtProps();
+        jwtProps.setIssueUri("https://intproj21.sit.kmutt.ac.th/us3/api/auth");
+        tokenService = new TokenService("benchmark-secret-that-is-at-least-256-bits-long", MAX_AGE_SECONDS, 86400L, jwtProps);
+
+        claims = new UserClaims(1, "somchai.jaid@mail.kmutt.ac.th", "Somchai Jaidee", "STUDENT");
+        token = tokenService.createJwtFromUserClaims(claims, MAX_AGE_SECONDS).getTokenValue();
+    }
+
+    @Benchmark
+    public Jwt create() {
+        return tokenService.createJwtFromUserClaims(claims, MAX_AGE_SECONDS);
+    }
+
+    @Benchmark
+    public Jwt decode() {
+        return tokenService.decode(token);
+    }
+}
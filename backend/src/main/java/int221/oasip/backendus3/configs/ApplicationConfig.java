@@ -1,25 +1,32 @@
 package int221.oasip.backendus3.configs;
 
-import int221.oasip.backendus3.utils.ModelMapperUtils;
-import org.modelmapper.ModelMapper;
+import int221.oasip.backendus3.services.password.Argon2Calibrator;
+import int221.oasip.backendus3.services.password.BoundedPasswordEncoder;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 
 @Configuration
+@Slf4j
 public class ApplicationConfig {
-    @Bean
-    public ModelMapper modelMapper() {
-        return new ModelMapper();
-    }
-
-    @Bean
-    public ModelMapperUtils modelMapperUtils() {
-        return new ModelMapperUtils(modelMapper());
-    }
+    /**
+     * Argon2 on its own threads, with the costs calibrated for this machine unless {@code password.calibrate} is false
+     */
+    @Bean(destroyMethod = "close")
+    public BoundedPasswordEncoder passwordEncoder(PasswordProps props) {
+        int memory = props.getMemory();
+        int iterations = props.getIterations();
+        if (props.isCalibrate()) {
+            Argon2Calibrator.Costs costs = new Argon2Calibrator(props.getTargetLatency(),
+                    props.getMemory(), props.getMaxMemory(), props.getIterations(), props.getMaxIterations()).calibrate();
+            memory = costs.getMemory();
+            iterations = costs.getIterations();
+            log.info("Argon2 calibrated to m={} KiB, t={}, about {} ms per hash",
+                    memory, iterations, costs.getEstimatedLatency().toMillis());
+        }
 
-    @Bean
-    public Argon2PasswordEncoder argon2PasswordEncoder() {
-        return new Argon2PasswordEncoder();
+        int threads = props.getThreads() > 0 ? props.getThreads() : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(Argon2Calibrator.createEncoder(memory, iterations), memory, iterations,
+                threads, props.getQueueCapacity(), props.getTimeout(), props.getRetryAfter());
     }
 }
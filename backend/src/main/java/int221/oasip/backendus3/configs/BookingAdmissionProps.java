@@ -0,0 +1,31 @@
+package int221.oasip.backendus3.configs;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * See {@link int221.oasip.backendus3.services.booking.BookingAdmission}
+ */
+@Component
+@ConfigurationProperties(prefix = "booking.admission")
+@Getter
+@Setter
+public class BookingAdmissionProps {
+    /**
+     * Also lock the category row in the database and check every overlap in it, required when several backends
+     * share the database. The {@link int221.oasip.backendus3.services.booking.EventIntervalIndex} is not kept then.
+     */
+    private boolean distributed = false;
+    /**
+     * Maximum time a booking waits behind the other bookings of its category in this backend, rejected with 503 after it
+     */
+    private Duration timeout = Duration.ofSeconds(5);
+    /**
+     * Sent as Retry-After when a booking is rejected
+     */
+    private Duration retryAfter = Duration.ofSeconds(1);
+}
@@ -2,8 +2,11 @@ package int221.oasip.backendus3.configs;
 
 import int221.oasip.backendus3.dtos.ApiError;
 import int221.oasip.backendus3.exceptions.FieldNotValidException;
+import int221.oasip.backendus3.exceptions.ServiceBusyException;
+import int221.oasip.backendus3.exceptions.TooManyRequestsException;
 import int221.oasip.backendus3.exceptions.ValidationErrors;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindException;
@@ -12,6 +15,8 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
+
 @ControllerAdvice
 public class GlobalControllerAdvice {
     @Value("${spring.servlet.multipart.max-file-size}")
@@ -40,8 +45,33 @@ public class GlobalControllerAdvice {
         return ApiError.fromException(exception).toResponseEntity();
     }
 
+    @ExceptionHandler({ServiceBusyException.class})
+    public ResponseEntity<ApiError> handleServiceBusyException(ServiceBusyException exception) {
+        HttpStatus status = HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity
+                .status(status)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(toRetryAfterSeconds(exception.getRetryAfter())))
+                .body(new ApiError(status, exception.getMessage()));
+    }
+
+    @ExceptionHandler({TooManyRequestsException.class})
+    public ResponseEntity<ApiError> handleTooManyRequestsException(TooManyRequestsException exception) {
+        HttpStatus status = HttpStatus.TOO_MANY_REQUESTS;
+        return ResponseEntity
+                .status(status)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(toRetryAfterSeconds(exception.getRetryAfter())))
+                .body(new ApiError(status, exception.getMessage()));
+    }
+
     @ExceptionHandler({ValidationErrors.class})
     public ResponseEntity<ApiError> handleValidationErrors(ValidationErrors exception) {
         return ApiError.fromException(exception).toResponseEntity();
     }
+
+    /**
+     * Retry-After is in whole seconds, round up so the client does not retry too early
+     */
+    private static long toRetryAfterSeconds(Duration retryAfter) {
+        return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
 }
@@ -0,0 +1,70 @@
+package int221.oasip.backendus3.configs;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "mail")
+@Getter
+@Setter
+public class MailProps {
+    private boolean disable;
+    private String username;
+    private String password;
+    private String host = "smtp.gmail.com";
+    private int port = 587;
+    private boolean auth = true;
+    private boolean starttls = true;
+    private String from = "oasip.us3.noreply@gmail.com";
+    private Pool pool = new Pool();
+    private Outbox outbox = new Outbox();
+
+    @Getter
+    @Setter
+    public static class Pool {
+        /**
+         * Maximum number of SMTP connections kept open, should be at least {@link Outbox#getWorkers()}
+         */
+        private int size = 2;
+        /**
+         * Reconnect after sending this many messages through one connection, most servers limit it
+         */
+        private int maxMessagesPerConnection = 100;
+        /**
+         * How long to wait for a connection when all of them are in use
+         */
+        private Duration borrowTimeout = Duration.ofSeconds(30);
+    }
+
+    @Getter
+    @Setter
+    public static class Outbox {
+        /**
+         * Number of threads sending the mails, each one holds one SMTP connection while sending a batch
+         */
+        private int workers = 2;
+        private int batchSize = 20;
+        private Duration pollInterval = Duration.ofSeconds(1);
+        /**
+         * How long a claimed mail is hidden from other pollers, a mail is retried after this if its sender crashed
+         */
+        private Duration lease = Duration.ofMinutes(5);
+        private int maxAttempts = 8;
+        private Duration initialBackoff = Duration.ofSeconds(30);
+        private Duration maxBackoff = Duration.ofHours(1);
+        /**
+         * Number of consecutive failed connections before the sending is paused
+         */
+        private int circuitBreakerThreshold = 5;
+        private Duration circuitBreakerOpenDuration = Duration.ofMinutes(1);
+        /**
+         * How long the sent and failed mails are kept, counted from their last attempt
+         */
+        private Duration retention = Duration.ofDays(7);
+        private Duration purgeInterval = Duration.ofHours(1);
+    }
+}
@@ -1,29 +1,74 @@
 package int221.oasip.backendus3.configs;
 
+import com.nimbusds.jwt.JWTParser;
+import int221.oasip.backendus3.services.jwt.VerifiedTokenCache;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationManagerResolver;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
-import org.springframework.security.oauth2.server.resource.authentication.JwtIssuerAuthenticationManagerResolver;
 
 import javax.servlet.http.HttpServletRequest;
+import java.text.ParseException;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Route a bearer token to the authentication manager of its issuer.
+ * <p>A token in the {@link VerifiedTokenCache} is routed by the issuer of the cached token without parsing it,
+ * any other token is parsed once to read its issuer, then once more by the decoder that verifies it.
+ */
 public class MyJwtIssuerAuthenticationManagerResolver implements AuthenticationManagerResolver<HttpServletRequest> {
     private final Map<String, AuthenticationManager> authenticationManagers = new HashMap<>();
-    private final JwtIssuerAuthenticationManagerResolver authenticationManagerResolver = new JwtIssuerAuthenticationManagerResolver(authenticationManagers::get);
+    private final VerifiedTokenCache verifiedTokens;
+    private final AuthenticationManager issuerAuthenticationManager = this::authenticate;
+
+    public MyJwtIssuerAuthenticationManagerResolver(VerifiedTokenCache verifiedTokens) {
+        this.verifiedTokens = verifiedTokens;
+    }
 
     public void addManager(String issuer, JwtAuthenticationProvider jwtAuthenticationProvider) {
         authenticationManagers.put(issuer, jwtAuthenticationProvider::authenticate);
     }
 
     @Override
-    public AuthenticationManager resolve(HttpServletRequest authentication) {
-        return authenticationManagerResolver.resolve(authentication);
+    public AuthenticationManager resolve(HttpServletRequest request) {
+        return issuerAuthenticationManager;
     }
 
     public MyJwtIssuerAuthenticationManagerResolver register(JwtAuthenticationProviderConfigurer jwtAuthenticationProviderConfigurer) {
         jwtAuthenticationProviderConfigurer.configure(this);
         return this;
     }
+
+    private Authentication authenticate(Authentication authentication) {
+        String token = ((BearerTokenAuthenticationToken) authentication).getToken();
+        AuthenticationManager authenticationManager = authenticationManagers.get(getIssuer(token));
+        if (authenticationManager == null) {
+            throw new InvalidBearerTokenException("Invalid issuer");
+        }
+        return authenticationManager.authenticate(authentication);
+    }
+
+    private String getIssuer(String token) {
+        Jwt verified = verifiedTokens.peek(token);
+        String issuer;
+        if (verified != null) {
+            issuer = verified.getClaimAsString(JwtClaimNames.ISS);
+        } else {
+            try {
+                issuer = JWTParser.parse(token).getJWTClaimsSet().getIssuer();
+            } catch (ParseException e) {
+                throw new InvalidBearerTokenException(e.getMessage(), e);
+            }
+        }
+
+        if (issuer == null) {
+            throw new InvalidBearerTokenException("Missing issuer");
+        }
+        return issuer;
+    }
 }
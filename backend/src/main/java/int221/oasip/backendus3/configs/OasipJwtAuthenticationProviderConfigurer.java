@@ -1,6 +1,10 @@
 package int221.oasip.backendus3.configs;
 
 import int221.oasip.backendus3.services.TokenService;
+import int221.oasip.backendus3.services.jwt.CachingJwtDecoder;
+import int221.oasip.backendus3.services.jwt.TimedJwtDecoder;
+import int221.oasip.backendus3.services.jwt.VerifiedTokenCache;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
@@ -13,6 +17,8 @@ import org.springframework.stereotype.Component;
 public class OasipJwtAuthenticationProviderConfigurer implements JwtAuthenticationProviderConfigurer {
     private final TokenService tokenService;
     private final OasipJwtProps oasipJwtProps;
+    private final MeterRegistry meterRegistry;
+    private final VerifiedTokenCache verifiedTokenCache;
 
     @Override
     public void configure(MyJwtIssuerAuthenticationManagerResolver authenticationManagerResolver) {
@@ -20,7 +26,9 @@ public class OasipJwtAuthenticationProviderConfigurer implements JwtAuthenticati
     }
 
     private JwtAuthenticationProvider getJwtAuthenticationProvider() {
-        JwtAuthenticationProvider oasipAuthenticationProvider = new JwtAuthenticationProvider(tokenService.jwtDecoder());
+        CachingJwtDecoder cachingJwtDecoder = new CachingJwtDecoder(tokenService.jwtDecoder(), verifiedTokenCache);
+        JwtAuthenticationProvider oasipAuthenticationProvider = new JwtAuthenticationProvider(
+                new TimedJwtDecoder(cachingJwtDecoder, meterRegistry, "oasip"));
         oasipAuthenticationProvider.setJwtAuthenticationConverter(getJwtAuthenticationConverter());
         return oasipAuthenticationProvider;
     }
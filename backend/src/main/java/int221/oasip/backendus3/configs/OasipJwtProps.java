@@ -12,4 +12,8 @@ import org.springframework.stereotype.Component;
 @Setter
 public class OasipJwtProps {
     private String issueUri;
+    /**
+     * Maximum number of verified tokens cached, see {@link int221.oasip.backendus3.services.jwt.VerifiedTokenCache}
+     */
+    private int cacheMaxSize = 10000;
 }
@@ -0,0 +1,49 @@
+package int221.oasip.backendus3.configs;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "password")
+@Getter
+@Setter
+public class PasswordProps {
+    /**
+     * Threads hashing passwords, 0 for the number of cores
+     */
+    private int threads = 0;
+    /**
+     * Hashes waiting for a thread, more are rejected with 503
+     */
+    private int queueCapacity = 64;
+    /**
+     * Maximum time a request waits for its hash, including the time in the queue
+     */
+    private Duration timeout = Duration.ofSeconds(10);
+    /**
+     * Sent as Retry-After when a hash is rejected
+     */
+    private Duration retryAfter = Duration.ofSeconds(5);
+    /**
+     * Pick the memory and iterations at startup so a hash takes about {@link #targetLatency}
+     */
+    private boolean calibrate = true;
+    private Duration targetLatency = Duration.ofMillis(200);
+    /**
+     * Memory in KiB, the lower bound when calibrating
+     */
+    private int memory = 16384;
+    /**
+     * Upper bound of the memory in KiB when calibrating, every thread may use that much at the same time
+     */
+    private int maxMemory = 65536;
+    /**
+     * Iterations, the lower bound when calibrating
+     */
+    private int iterations = 2;
+    private int maxIterations = 10;
+}
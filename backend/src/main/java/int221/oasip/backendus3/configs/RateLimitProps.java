@@ -0,0 +1,46 @@
+package int221.oasip.backendus3.configs;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Limits of the endpoints that check passwords, see {@link int221.oasip.backendus3.services.ratelimit.LoginRateLimiter}
+ */
+@Component
+@ConfigurationProperties(prefix = "rate-limit.login")
+@Getter
+@Setter
+public class RateLimitProps {
+    private boolean enabled = true;
+    private Limit ip = new Limit(20, Duration.ofSeconds(3));
+    private Limit account = new Limit(5, Duration.ofSeconds(30));
+    /**
+     * Maximum number of IPs and of accounts remembered
+     */
+    private int maxBuckets = 10000;
+
+    @Getter
+    @Setter
+    public static class Limit {
+        /**
+         * Requests allowed in a burst
+         */
+        private int capacity;
+        /**
+         * Time to allow one more request
+         */
+        private Duration refillInterval;
+
+        public Limit() {
+        }
+
+        public Limit(int capacity, Duration refillInterval) {
+            this.capacity = capacity;
+            this.refillInterval = refillInterval;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package int221.oasip.backendus3.configs;
 
 import int221.oasip.backendus3.configs.aad.AadConfiguration;
+import int221.oasip.backendus3.services.jwt.VerifiedTokenCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -14,6 +15,7 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
@@ -23,13 +25,15 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 @EnableGlobalMethodSecurity(prePostEnabled = true)
 public class ResourceServerConfig extends WebSecurityConfigurerAdapter {
     private final UserDetailsService userDetailsService;
+    private final UserDetailsPasswordService userDetailsPasswordService;
     private final PasswordEncoder passwordEncoder;
     private final AadConfiguration aadConfiguration;
     private final OasipJwtAuthenticationProviderConfigurer oasipJwtAuthenticationProviderConfigurer;
+    private final VerifiedTokenCache verifiedTokenCache;
 
     @Override
     protected void configure(HttpSecurity http) throws Exception {
-        MyJwtIssuerAuthenticationManagerResolver authenticationManagerResolver = new MyJwtIssuerAuthenticationManagerResolver();
+        MyJwtIssuerAuthenticationManagerResolver authenticationManagerResolver = new MyJwtIssuerAuthenticationManagerResolver(verifiedTokenCache);
         authenticationManagerResolver
                 .register(aadConfiguration)
                 .register(oasipJwtAuthenticationProviderConfigurer);
@@ -41,8 +45,10 @@ public class ResourceServerConfig extends WebSecurityConfigurerAdapter {
                 .antMatchers("/api/users/**").hasAnyAuthority("ROLE_ADMIN", "APPROLE_Admin")
 
                 // @PreAuthorize is used on the controller to guard lecturer from create, update, delete events
+                .antMatchers(HttpMethod.POST, "/api/events/import").hasAnyAuthority("ROLE_ADMIN", "APPROLE_Admin")
                 .antMatchers(HttpMethod.POST, "/api/events/**").permitAll()
                 .antMatchers(HttpMethod.GET, "/api/events/allocatedTimeSlots").permitAll()
+                .antMatchers(HttpMethod.GET, "/api/events/availableTimeSlots").permitAll()
                 .antMatchers("/api/events/**").authenticated()
 
                 .antMatchers(HttpMethod.GET, "/api/categories/lecturer/**").hasAnyAuthority("ROLE_LECTURER", "APPROLE_Lecturer")
@@ -52,6 +58,8 @@ public class ResourceServerConfig extends WebSecurityConfigurerAdapter {
 
                 .antMatchers(HttpMethod.GET, "/api/files/**").permitAll()
 
+                .antMatchers(HttpMethod.GET, "/actuator/health", "/actuator/prometheus").permitAll()
+
                 .anyRequest().authenticated()
                 .and()
                 .csrf().disable()
@@ -72,6 +80,8 @@ public class ResourceServerConfig extends WebSecurityConfigurerAdapter {
         DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
         provider.setPasswordEncoder(passwordEncoder);
         provider.setUserDetailsService(userDetailsService);
+        // rehash with the current Argon2 costs on login
+        provider.setUserDetailsPasswordService(userDetailsPasswordService);
         provider.setHideUserNotFoundExceptions(false);
         return provider;
     }
@@ -1,34 +1,52 @@
 package int221.oasip.backendus3.configs.aad;
 
 import com.azure.spring.cloud.autoconfigure.aad.AadTrustedIssuerRepository;
-import com.azure.spring.cloud.autoconfigure.aad.configuration.AadResourceServerConfiguration;
 import com.azure.spring.cloud.autoconfigure.aad.implementation.jwt.AadJwtGrantedAuthoritiesConverter;
 import com.azure.spring.cloud.autoconfigure.aad.properties.AadAuthenticationProperties;
 import com.azure.spring.cloud.autoconfigure.aad.properties.AadResourceServerProperties;
 import int221.oasip.backendus3.configs.JwtAuthenticationProviderConfigurer;
 import int221.oasip.backendus3.configs.MyJwtIssuerAuthenticationManagerResolver;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import int221.oasip.backendus3.services.jwt.CachingJwtDecoder;
+import int221.oasip.backendus3.services.jwt.RefreshingJwkSource;
+import int221.oasip.backendus3.services.jwt.TimedJwtDecoder;
+import int221.oasip.backendus3.services.jwt.VerifiedTokenCache;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
-import org.springframework.security.oauth2.jwt.Jwt;
-import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.*;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
 import org.springframework.util.StringUtils;
 
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
 @RequiredArgsConstructor
 @Configuration
 public class AadConfiguration implements JwtAuthenticationProviderConfigurer {
     private final AadResourceServerProperties resourceServerProperties;
     private final AadAuthenticationProperties authProperties;
-    private final AadResourceServerConfiguration aadResourceServerConfiguration;
+    private final AadJwtProps aadJwtProps;
+    private final MeterRegistry meterRegistry;
+    private final VerifiedTokenCache verifiedTokenCache;
 
     @Override
     public void configure(MyJwtIssuerAuthenticationManagerResolver authenticationManagerResolver) {
+        // every trusted issuer shares the provider, so a token is cached once
+        JwtAuthenticationProvider authenticationProvider = jwtAuthenticationProvider();
         aadTrustedIssuerRepository().getTrustedIssuers()
-                .forEach(issuer -> authenticationManagerResolver.addManager(issuer, jwtAuthenticationProvider()));
+                .forEach(issuer -> authenticationManagerResolver.addManager(issuer, authenticationProvider));
     }
 
     private JwtAuthenticationProvider jwtAuthenticationProvider() {
@@ -47,8 +65,44 @@ public class AadConfiguration implements JwtAuthenticationProviderConfigurer {
         return converter;
     }
 
+    /**
+     * Same checks as the decoder of the Azure starter, but the keys come from {@link #aadJwkSource()},
+     * which has them before the first request
+     */
     private JwtDecoder jwtDecoder() {
-        return aadResourceServerConfiguration.jwtDecoder(authProperties);
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, aadJwkSource()));
+        // the claims are checked by the validators of the decoder
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+
+        NimbusJwtDecoder nimbusJwtDecoder = new NimbusJwtDecoder(jwtProcessor);
+        nimbusJwtDecoder.setJwtValidator(jwtValidator());
+        CachingJwtDecoder cachingJwtDecoder = new CachingJwtDecoder(nimbusJwtDecoder, verifiedTokenCache);
+        return new TimedJwtDecoder(cachingJwtDecoder, meterRegistry, "aad");
+    }
+
+    private OAuth2TokenValidator<Jwt> jwtValidator() {
+        List<String> validAudiences = new ArrayList<>();
+        if (StringUtils.hasText(authProperties.getAppIdUri())) {
+            validAudiences.add(authProperties.getAppIdUri());
+        }
+        if (StringUtils.hasText(authProperties.getCredential().getClientId())) {
+            validAudiences.add(authProperties.getCredential().getClientId());
+        }
+        Set<String> trustedIssuers = aadTrustedIssuerRepository().getTrustedIssuers();
+
+        return new DelegatingOAuth2TokenValidator<>(
+                new JwtTimestampValidator(),
+                new JwtClaimValidator<String>(JwtClaimNames.ISS, trustedIssuers::contains),
+                new JwtClaimValidator<List<String>>(JwtClaimNames.AUD,
+                        audiences -> audiences != null && audiences.stream().anyMatch(validAudiences::contains)));
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public RefreshingJwkSource aadJwkSource() {
+        return new RefreshingJwkSource(URI.create(aadJwtProps.getJwkSetUri()),
+                aadJwtProps.getJwkSetRefreshInterval(), aadJwtProps.getJwkSetMinRefreshInterval());
     }
 
     @Bean
@@ -0,0 +1,27 @@
+package int221.oasip.backendus3.configs.aad;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "oasip.aad")
+@Getter
+@Setter
+public class AadJwtProps {
+    /**
+     * Key set of the tenant, fetched at startup
+     */
+    private String jwkSetUri;
+    /**
+     * Time between two background refreshes of the key set
+     */
+    private Duration jwkSetRefreshInterval = Duration.ofHours(1);
+    /**
+     * Minimum time between two fetches caused by a token signed with an unknown key
+     */
+    private Duration jwkSetMinRefreshInterval = Duration.ofMinutes(1);
+}
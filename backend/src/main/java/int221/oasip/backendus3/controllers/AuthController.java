@@ -10,6 +10,7 @@ import int221.oasip.backendus3.services.AuthService;
 import int221.oasip.backendus3.services.TokenService;
 import int221.oasip.backendus3.services.UserService;
 import int221.oasip.backendus3.services.jwt.UserClaims;
+import int221.oasip.backendus3.services.ratelimit.LoginRateLimiter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
@@ -24,6 +25,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
 import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import java.time.Duration;
@@ -39,12 +41,14 @@ public class AuthController {
     private final AuthenticationManager authenticationManager;
     private final UserService userService;
     private final TokenService tokenService;
+    private final LoginRateLimiter loginRateLimiter;
 
     @Value("${refresh-token.secure}")
     private Boolean refreshTokenSecure;
 
     @PostMapping("/match")
-    public String match(@Valid @RequestBody MatchRequest matchRequest) {
+    public String match(@Valid @RequestBody MatchRequest matchRequest, HttpServletRequest request) {
+        loginRateLimiter.acquire(request, matchRequest.getEmail());
         try {
             boolean matches = service.match(matchRequest);
             if (!matches) {
@@ -57,7 +61,8 @@ public class AuthController {
     }
 
     @PostMapping("/login")
-    public LoginResponse login(@RequestBody LoginRequest loginRequest, HttpServletResponse response) {
+    public LoginResponse login(@RequestBody LoginRequest loginRequest, HttpServletRequest request, HttpServletResponse response) {
+        loginRateLimiter.acquire(request, loginRequest.getEmail());
         Authentication authentication;
         try {
             authentication = authenticationManager.authenticate(
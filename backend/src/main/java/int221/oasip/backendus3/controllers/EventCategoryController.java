@@ -7,8 +7,12 @@ import int221.oasip.backendus3.exceptions.NotUniqueException;
 import int221.oasip.backendus3.services.EventCategoryService;
 import int221.oasip.backendus3.services.auth.AuthStatus;
 import int221.oasip.backendus3.services.auth.AuthUtil;
+import int221.oasip.backendus3.services.cache.CategoryCatalogue;
 import lombok.AllArgsConstructor;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -22,9 +26,17 @@ public class EventCategoryController {
     private EventCategoryService service;
     private AuthUtil authUtil;
 
+    /**
+     * Serve the cached JSON of the catalogue, a request with a matching If-None-Match gets a 304
+     */
     @GetMapping("")
-    public List<CategoryResponse> getCategories() {
-        return service.getAll();
+    public ResponseEntity<byte[]> getCategories() {
+        CategoryCatalogue.Snapshot catalogue = service.getCatalogue();
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(catalogue.getETag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(catalogue.getJson());
     }
 
     @PatchMapping("/{id}")
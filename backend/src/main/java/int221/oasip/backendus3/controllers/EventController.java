@@ -1,25 +1,40 @@
 package int221.oasip.backendus3.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import int221.oasip.backendus3.dtos.CompactTimeSlotsResponse;
 import int221.oasip.backendus3.dtos.CreateEventMultipartRequest;
 import int221.oasip.backendus3.dtos.EditEventMultipartRequest;
+import int221.oasip.backendus3.dtos.EventImportResponse;
 import int221.oasip.backendus3.dtos.EventResponse;
 import int221.oasip.backendus3.dtos.EventTimeSlotResponse;
 import int221.oasip.backendus3.exceptions.EntityNotFoundException;
 import int221.oasip.backendus3.exceptions.EventOverlapException;
 import int221.oasip.backendus3.exceptions.FieldNotValidException;
+import int221.oasip.backendus3.repository.EventCursor;
+import int221.oasip.backendus3.repository.EventFilter;
 import int221.oasip.backendus3.services.EventService;
 import int221.oasip.backendus3.services.auth.AuthStatus;
 import int221.oasip.backendus3.services.auth.AuthUtil;
+import int221.oasip.backendus3.services.booking.EventImportReader;
+import int221.oasip.backendus3.services.booking.EventImportService;
 import lombok.AllArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import javax.mail.MessagingException;
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.util.List;
 
@@ -27,26 +42,99 @@ import java.util.List;
 @RequestMapping("/api/events")
 @AllArgsConstructor
 public class EventController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_LIMIT = 50;
+    private static final int MAX_PAGE_LIMIT = 500;
+    private static final int STREAM_PAGE_SIZE = 200;
+    private static final int MAX_AVAILABLE_SLOTS = 20;
     private EventService service;
+    private EventImportService importService;
     private AuthUtil authUtils;
+    private ObjectMapper objectMapper;
 
+    /**
+     * Get events, all at once or one page at a time.
+     * <p>Pagination is used when {@code limit} or {@code cursor} is provided. Events are then ordered by start time then id,
+     * and the cursor of the next page is returned in the {@value #NEXT_CURSOR_HEADER} header if there are more events.
+     */
     @GetMapping("")
-    public List<EventResponse> getEvents(
+    public ResponseEntity<List<EventResponse>> getEvents(
+            @RequestParam(required = false) Integer categoryId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startAt,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor
+    ) {
+        EventService.GetEventsOptions options = getEventsOptions(categoryId, startAt, type);
+        if (limit == null && cursor == null) {
+            return ResponseEntity.ok(service.getEventsNew(options));
+        }
+
+        int pageLimit = limit == null ? DEFAULT_PAGE_LIMIT : limit;
+        if (pageLimit < 1 || pageLimit > MAX_PAGE_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_LIMIT);
+        }
+
+        EventCursor after;
+        try {
+            after = cursor == null ? null : EventCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        EventService.EventPage page = service.getEventsPage(
+                service.getUserAwareEventFilter(options), options.getType(), authUtils.getAuthStatus(), after, pageLimit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor().encode());
+        }
+        return response.body(page.getItems());
+    }
+
+    /**
+     * Same as {@link #getEvents} without pagination, but the JSON array is written page by page while the events are read,
+     * so the whole list is never held in memory
+     */
+    @GetMapping(value = "", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamEvents(
             @RequestParam(required = false) Integer categoryId,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startAt,
             @RequestParam(required = false) String type
     ) {
+        // the filter must be created on the request thread, where the authentication is available
+        EventService.GetEventsOptions options = getEventsOptions(categoryId, startAt, type);
+        EventFilter filter = service.getUserAwareEventFilter(options);
+        AuthStatus authStatus = authUtils.getAuthStatus();
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                EventCursor after = null;
+                do {
+                    EventService.EventPage page = service.getEventsPage(filter, options.getType(), authStatus, after, STREAM_PAGE_SIZE);
+                    for (EventResponse event : page.getItems()) {
+                        generator.writeObject(event);
+                    }
+                    generator.flush();
+                    after = page.getNextCursor();
+                } while (after != null);
+                generator.writeEndArray();
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private EventService.GetEventsOptions getEventsOptions(Integer categoryId, OffsetDateTime startAt, String type) {
         AuthStatus authStatus = authUtils.getAuthStatus();
         if (authStatus.isGuest) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "You must be logged in to access this resource");
         }
 
-        EventService.GetEventsOptions options = new EventService.GetEventsOptions(
+        return new EventService.GetEventsOptions(
                 type,
                 startAt == null ? null : startAt.toInstant(),
                 categoryId == null ? null : List.of(categoryId));
-
-        return service.getEventsNew(options);
     }
 
     @GetMapping("/allocatedTimeSlots")
@@ -55,7 +143,51 @@ public class EventController {
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startAt,
             @RequestParam(required = false) Integer excludeEventId
     ) {
-        return service.getAllocatedTimeSlotsInCategoryOnDate(categoryId, startAt.toInstant(), excludeEventId);
+        try {
+            return service.getAllocatedTimeSlotsInCategoryOnDate(categoryId, startAt.toInstant(), excludeEventId);
+        } catch (EntityNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    /**
+     * Same as {@link #getAllocatedTimeSlotsInCategoryOnDate} as pairs of start offset and duration, for clients that poll it
+     */
+    @GetMapping(value = "/allocatedTimeSlots", params = "format=compact")
+    public CompactTimeSlotsResponse getCompactAllocatedTimeSlotsInCategoryOnDate(
+            @RequestParam Integer categoryId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startAt,
+            @RequestParam(required = false) Integer excludeEventId
+    ) {
+        try {
+            return service.getCompactAllocatedTimeSlotsInCategoryOnDate(categoryId, startAt.toInstant(), excludeEventId);
+        } catch (EntityNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    /**
+     * Find the free slots of the category nearest to {@code startAt}, within 12 hours before or after it
+     *
+     * @param count          maximum number of slots, from 1 to {@value #MAX_AVAILABLE_SLOTS}
+     * @param excludeEventId event to ignore, usually the event being moved
+     */
+    @GetMapping("/availableTimeSlots")
+    public List<EventTimeSlotResponse> getAvailableTimeSlots(
+            @RequestParam Integer categoryId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startAt,
+            @RequestParam(defaultValue = "5") int count,
+            @RequestParam(required = false) Integer excludeEventId
+    ) {
+        if (count < 1 || count > MAX_AVAILABLE_SLOTS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "count must be between 1 and " + MAX_AVAILABLE_SLOTS);
+        }
+
+        try {
+            return service.getAvailableTimeSlots(categoryId, startAt.toInstant(), count, excludeEventId);
+        } catch (EntityNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
     }
 
     @GetMapping("/{id}")
@@ -70,12 +202,46 @@ public class EventController {
         try {
             return service.create(newEvent);
         } catch (EventOverlapException e) {
-            throw new FieldNotValidException("eventStartTime", e.getMessage());
+            throw new FieldNotValidException("eventStartTime", e.getMessage(), e.getSuggestions());
         } catch (EntityNotFoundException e) {
             // category not found or user not found
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
-        } catch (MessagingException | IOException e) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to send email");
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to upload file");
+        }
+    }
+
+    /**
+     * Create many events from CSV with a header row of {@code eventCategoryId, bookingName, bookingEmail, eventStartTime, eventNotes}.
+     * Every row is checked like {@link #create}, the rejected rows do not stop the others from being created.
+     *
+     * @param notify queue the confirmation mail of every created event
+     */
+    @PostMapping(value = "/import", consumes = "text/csv")
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'APPROLE_Admin')")
+    public EventImportResponse importCsv(@RequestParam(defaultValue = "false") boolean notify, HttpServletRequest request) {
+        return importEvents(request, EventImportReader.Format.CSV, notify);
+    }
+
+    /**
+     * Same as {@link #importCsv} with one JSON object per line, with the fields of {@link #create}
+     */
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'APPROLE_Admin')")
+    public EventImportResponse importNdjson(@RequestParam(defaultValue = "false") boolean notify, HttpServletRequest request) {
+        return importEvents(request, EventImportReader.Format.NDJSON, notify);
+    }
+
+    private EventImportResponse importEvents(HttpServletRequest request, EventImportReader.Format format, boolean notify) {
+        try {
+            Charset charset = request.getCharacterEncoding() == null ? StandardCharsets.UTF_8 : Charset.forName(request.getCharacterEncoding());
+            try (Reader input = new InputStreamReader(request.getInputStream(), charset)) {
+                return importService.importEvents(input, format, notify);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Failed to read the file");
         }
     }
 
@@ -96,7 +262,7 @@ public class EventController {
         try {
             return service.update(id, editEvent);
         } catch (EventOverlapException e) {
-            throw new FieldNotValidException("eventStartTime", e.getMessage());
+            throw new FieldNotValidException("eventStartTime", e.getMessage(), e.getSuggestions());
         } catch (EntityNotFoundException e) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
         } catch (IOException e) {
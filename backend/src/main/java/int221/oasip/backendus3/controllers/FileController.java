@@ -2,50 +2,154 @@ package int221.oasip.backendus3.controllers;
 
 import int221.oasip.backendus3.services.FileService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
+import org.apache.catalina.Globals;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.io.File;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/files")
 @RequiredArgsConstructor
 public class FileController {
+    /**
+     * Smaller files are written by the request thread, the same threshold as Tomcat's default servlet
+     */
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
     private final FileService fileService;
 
+    /**
+     * Download an attachment without loading it into memory.
+     * <p>Supports conditional requests with the ETag of the file, and the Last-Modified of the files stored before the blobs,
+     * and a single byte range with {@code Range} and {@code If-Range}. Multiple ranges are answered with the whole file.
+     */
     @GetMapping("/{bucketId}/{fileName}")
-    public ResponseEntity<?> getFile(
+    public void getFile(
             @PathVariable String bucketId,
-            @PathVariable String fileName
+            @PathVariable String fileName,
+            HttpServletRequest request,
+            HttpServletResponse response
     ) throws IOException {
-        File file = fileService.getFile(bucketId, fileName)
+        FileService.StoredFile file = fileService.getStoredFile(bucketId, fileName)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found"));
 
-        Path path = Paths.get(file.getAbsolutePath());
-        Resource resource = new ByteArrayResource(Files.readAllBytes(path));
-        String contentType = Files.probeContentType(path);
+        String eTag = file.getETag();
+        if (new ServletWebRequest(request, response).checkNotModified(eTag, file.getLastModified())) {
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.inline().filename(file.getName(), StandardCharsets.UTF_8).build().toString());
+        response.setContentType(getContentType(file));
+
+        long size = file.getSize();
+        long start = 0;
+        long end = size;
+        HttpRange range = getRangeIfApplicable(request, file);
+        if (range != null) {
+            try {
+                start = range.getRangeStart(size);
+                end = range.getRangeEnd(size) + 1;
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + size);
+        }
+
+        response.setContentLengthLong(end - start);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (end - start >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(Globals.SENDFILE_SUPPORTED_ATTR))) {
+            // the connector writes the file from the kernel after the request returns
+            request.setAttribute(Globals.SENDFILE_FILENAME_ATTR, file.getPath().toAbsolutePath().toString());
+            request.setAttribute(Globals.SENDFILE_FILE_START_ATTR, start);
+            request.setAttribute(Globals.SENDFILE_FILE_END_ATTR, end);
+            fileService.recordDownload(end - start, null);
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file.getPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position < end) {
+                position += channel.transferTo(position, end - position, out);
+            }
+        }
+        fileService.recordDownload(end - start, Duration.ofNanos(System.nanoTime() - startTime));
+    }
+
+    private static String getContentType(FileService.StoredFile file) {
+        try {
+            return MediaType.parseMediaType(file.getContentType()).toString();
+        } catch (RuntimeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+    }
+
+    /**
+     * @return the requested range, or null if the whole file should be sent
+     */
+    private static HttpRange getRangeIfApplicable(HttpServletRequest request, FileService.StoredFile file) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !isIfRangeSatisfied(request, file)) {
+            return null;
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return ranges.size() == 1 ? ranges.get(0) : null;
+    }
+
+    private static boolean isIfRangeSatisfied(HttpServletRequest request, FileService.StoredFile file) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.add(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=" + file.getName());
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // a weak tag never matches
+            return ifRange.equals(file.getETag());
+        }
 
-        return ResponseEntity.ok()
-                .headers(headers)
-                .contentType(contentType == null
-                        ? MediaType.APPLICATION_OCTET_STREAM
-                        : MediaType.parseMediaType(contentType))
-                .body(resource);
+        if (file.getLastModified() < 0) {
+            // no Last-Modified was sent, so the date cannot come from this file
+            return false;
+        }
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date / 1000 == file.getLastModified() / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
     }
 }
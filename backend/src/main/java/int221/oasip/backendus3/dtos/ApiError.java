@@ -46,6 +46,8 @@ public class ApiError {
 
     private Map<String, List<String>> errors;
 
+    private List<?> suggestions;
+
     public ApiError(HttpStatus httpStatus, String message) {
         this.timestamp = Instant.now().toString();
         this.httpStatus = httpStatus;
@@ -61,6 +63,7 @@ public class ApiError {
     public static ApiError fromException(FieldNotValidException e) {
         ApiError apiError = makeApiErrorForBadRequest(VALIDATION_ERROR_MESSAGE);
         apiError.errors = makeValidationErrorMap(e);
+        apiError.suggestions = e.getSuggestions();
         return apiError;
     }
 
@@ -0,0 +1,20 @@
+package int221.oasip.backendus3.dtos;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Compact form of a list of {@link EventTimeSlotResponse}, returned with {@code format=compact}
+ */
+@Getter
+@RequiredArgsConstructor
+public class CompactTimeSlotsResponse {
+    private final Integer eventCategoryId;
+    private final Instant startAt;
+    /**
+     * Pairs of start time in seconds after {@code startAt} and duration in minutes, ordered by start time
+     */
+    private final int[] slots;
+}
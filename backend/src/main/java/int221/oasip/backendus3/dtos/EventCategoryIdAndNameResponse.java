@@ -1,10 +1,14 @@
 package int221.oasip.backendus3.dtos;
 
+import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Getter
 @Setter
+@NoArgsConstructor
+@AllArgsConstructor
 public class EventCategoryIdAndNameResponse {
     private Integer id;
     private String eventCategoryName;
@@ -0,0 +1,17 @@
+package int221.oasip.backendus3.dtos;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@RequiredArgsConstructor
+public class EventImportResponse {
+    private final int created;
+    private final int rejected;
+    /**
+     * One result per row, in the order of the file
+     */
+    private final List<EventImportRowResponse> rows;
+}
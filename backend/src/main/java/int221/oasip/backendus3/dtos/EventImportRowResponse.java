@@ -0,0 +1,47 @@
+package int221.oasip.backendus3.dtos;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of one row of an event import
+ */
+@Getter
+@RequiredArgsConstructor
+public class EventImportRowResponse {
+    public enum Status {
+        CREATED,
+        /**
+         * The row cannot be read or a field is not valid
+         */
+        INVALID,
+        /**
+         * The category does not exist
+         */
+        NOT_FOUND,
+        /**
+         * The event overlaps with an existing event or with a previous row of the same category
+         */
+        OVERLAP
+    }
+
+    /**
+     * Line where the row starts, the first line of the file is 1
+     */
+    private final int row;
+    private final Status status;
+    /**
+     * Id of the created event, null if the row is rejected
+     */
+    @Nullable
+    private final Integer eventId;
+    /**
+     * Messages by field, null if the row is created
+     */
+    @Nullable
+    private final Map<String, List<String>> errors;
+}
@@ -2,14 +2,17 @@ package int221.oasip.backendus3.dtos;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import javax.annotation.Nullable;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
 @Getter
 @Setter
+@NoArgsConstructor
 public class EventResponse {
     private Integer id;
     private EventCategoryIdAndNameResponse eventCategory;
@@ -21,4 +24,19 @@ public class EventResponse {
     @JsonInclude(JsonInclude.Include.NON_EMPTY)
     @Nullable
     private List<FileInfoResponse> files;
+
+    /**
+     * Used by the read-only query path to create the response directly from the columns, files are added afterwards
+     */
+    public EventResponse(Integer id, Integer eventCategoryId, String eventCategoryName, String bookingName, String bookingEmail,
+                         Instant eventStartTime, Integer eventDuration, String eventNotes) {
+        this.id = id;
+        this.eventCategory = new EventCategoryIdAndNameResponse(eventCategoryId, eventCategoryName);
+        this.bookingName = bookingName;
+        this.bookingEmail = bookingEmail;
+        this.eventStartTime = eventStartTime;
+        this.eventDuration = eventDuration;
+        this.eventNotes = eventNotes;
+        this.files = new ArrayList<>();
+    }
 }
@@ -3,7 +3,9 @@ package int221.oasip.backendus3.entities;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
-import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Generated;
+import org.hibernate.annotations.GenerationTime;
 
 import javax.persistence.*;
 import java.time.Instant;
@@ -12,10 +14,23 @@ import java.util.List;
 
 @Entity
 @Table(name = "event")
+@NamedEntityGraphs({
+        @NamedEntityGraph(name = Event.GRAPH_WITH_CATEGORY, attributeNodes = @NamedAttributeNode("eventCategory")),
+        @NamedEntityGraph(name = Event.GRAPH_WITH_CATEGORY_AND_FILES, attributeNodes = {
+                @NamedAttributeNode("eventCategory"),
+                @NamedAttributeNode("files")
+        })
+})
 @Getter
 @Setter
 @NoArgsConstructor
 public class Event {
+    public static final String GRAPH_WITH_CATEGORY = "Event.withCategory";
+    /**
+     * Only use it to load a single event, fetching a collection duplicates the rows of a list
+     */
+    public static final String GRAPH_WITH_CATEGORY_AND_FILES = "Event.withCategoryAndFiles";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "eventId", nullable = false)
@@ -40,10 +55,15 @@ public class Event {
     @Column(name = "eventNotes", length = 500)
     private String eventNotes;
 
-    @Formula("TIMESTAMPADD(MINUTE, eventDuration, eventStartTime)")
+    /**
+     * Generated by the database from {@code eventStartTime} and {@code eventDuration}, so it can be indexed
+     */
+    @Generated(GenerationTime.ALWAYS)
+    @Column(name = "eventEndTime", insertable = false, updatable = false)
     private Instant eventEndTime;
 
     @OneToMany(mappedBy = "event", orphanRemoval = true, cascade = CascadeType.ALL)
+    @BatchSize(size = 100)
     private List<File> files = new ArrayList<>();
 
     public Event(EventCategory eventCategory, String bookingName, String bookingEmail, Instant eventStartTime, String eventNotes) {
@@ -59,4 +79,12 @@ public class Event {
         this.eventCategory = eventCategory;
         this.eventDuration = eventCategory.getEventDuration();
     }
+
+    /**
+     * Set a category whose duration is already known, without reading it from a lazy reference
+     */
+    public void setEventCategory(EventCategory eventCategory, Integer eventDuration) {
+        this.eventCategory = eventCategory;
+        this.eventDuration = eventDuration;
+    }
 }
\ No newline at end of file
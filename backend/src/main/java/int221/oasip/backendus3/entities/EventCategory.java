@@ -3,6 +3,7 @@ package int221.oasip.backendus3.entities;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
@@ -11,10 +12,13 @@ import java.util.List;
 
 @Entity
 @Table(name = "eventCategory")
+@NamedEntityGraph(name = EventCategory.GRAPH_WITH_OWNERS, attributeNodes = @NamedAttributeNode("owners"))
 @Setter
 @Getter
 @NoArgsConstructor
 public class EventCategory {
+    public static final String GRAPH_WITH_OWNERS = "EventCategory.withOwners";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "eventCategoryId", nullable = false)
@@ -33,5 +37,6 @@ public class EventCategory {
     @Column(name = "eventDuration", nullable = false)
     private Integer eventDuration;
     @OneToMany(mappedBy = "eventCategory", fetch = FetchType.LAZY)
+    @BatchSize(size = 100)
     private List<EventCategoryOwner> owners;
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package int221.oasip.backendus3.entities;
 
+import int221.oasip.backendus3.services.cache.CategoryOwnershipListener;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -10,10 +11,14 @@ import javax.validation.constraints.Size;
 
 @Entity
 @Table(name = "eventCategoryOwner")
+@NamedEntityGraph(name = EventCategoryOwner.GRAPH_WITH_CATEGORY, attributeNodes = @NamedAttributeNode("eventCategory"))
+@EntityListeners(CategoryOwnershipListener.class)
 @Setter
 @Getter
 @NoArgsConstructor
 public class EventCategoryOwner {
+    public static final String GRAPH_WITH_CATEGORY = "EventCategoryOwner.withCategory";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "eventCategoryOwnerId", nullable = false)
@@ -32,6 +32,16 @@ public class File {
     @Column(name = "type", nullable = false)
     private String type;
 
+    /**
+     * Hash of the content, null for files uploaded before the blob store
+     */
+    @Size(max = 64)
+    @Column(name = "sha256", length = 64)
+    private String sha256;
+
+    @Column(name = "size")
+    private Long size;
+
     @NotNull
     @ManyToOne(fetch = FetchType.LAZY, optional = false, cascade = CascadeType.PERSIST)
     @JoinColumn(name = "eventId", nullable = false)
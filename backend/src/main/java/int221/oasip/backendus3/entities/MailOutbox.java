@@ -0,0 +1,59 @@
+package int221.oasip.backendus3.entities;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Generated;
+import org.hibernate.annotations.GenerationTime;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * A mail waiting to be sent. It is written in the same transaction as the change it is about,
+ * and sent later by {@link int221.oasip.backendus3.services.mail.MailOutboxWorker}.
+ */
+@Entity
+@Table(name = "mailOutbox")
+@Getter
+@Setter
+@NoArgsConstructor
+public class MailOutbox {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "mailOutboxId", nullable = false)
+    private Integer id;
+
+    @Column(name = "recipient", nullable = false, length = 50)
+    private String recipient;
+
+    @Column(name = "subject", nullable = false)
+    private String subject;
+
+    @Lob
+    @Column(name = "body", nullable = false)
+    private String body;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private Status status = Status.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "nextAttemptAt", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "lastError", length = 500)
+    private String lastError;
+
+    @Generated(GenerationTime.INSERT)
+    @Column(name = "createdOn", nullable = false)
+    private Instant createdOn;
+
+    public enum Status {
+        PENDING,
+        SENT,
+        FAILED
+    }
+}
@@ -10,11 +10,17 @@ import javax.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "user")
+@Table(name = "user", uniqueConstraints = {
+        @UniqueConstraint(name = User.NAME_UNIQUE, columnNames = "name"),
+        @UniqueConstraint(name = User.EMAIL_UNIQUE, columnNames = "email")
+})
 @Getter
 @Setter
 @ToString
 public class User {
+    public static final String NAME_UNIQUE = "userName_UNIQUE";
+    public static final String EMAIL_UNIQUE = "userEmail_UNIQUE";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "userId", nullable = false)
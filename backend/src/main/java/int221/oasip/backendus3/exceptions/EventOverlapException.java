@@ -1,7 +1,25 @@
 package int221.oasip.backendus3.exceptions;
 
+import int221.oasip.backendus3.dtos.EventTimeSlotResponse;
+import lombok.Getter;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+@Getter
 public class EventOverlapException extends RuntimeException {
+    /**
+     * Free slots near the requested time, null if the suggestions are disabled
+     */
+    @Nullable
+    private final List<EventTimeSlotResponse> suggestions;
+
     public EventOverlapException() {
+        this(null);
+    }
+
+    public EventOverlapException(@Nullable List<EventTimeSlotResponse> suggestions) {
         super("Start time overlaps with other event(s)");
+        this.suggestions = suggestions;
     }
 }
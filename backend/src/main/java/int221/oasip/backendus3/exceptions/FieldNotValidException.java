@@ -4,13 +4,26 @@ import lombok.Getter;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+import javax.annotation.Nullable;
+import java.util.List;
+
 @ResponseStatus(HttpStatus.BAD_REQUEST)
 @Getter
 public class FieldNotValidException extends RuntimeException {
     private final String field;
+    /**
+     * Valid values the client can use instead, added to the error body if not null
+     */
+    @Nullable
+    private final List<?> suggestions;
 
     public FieldNotValidException(String field, String message) {
+        this(field, message, null);
+    }
+
+    public FieldNotValidException(String field, String message, @Nullable List<?> suggestions) {
         super(message);
         this.field = field;
+        this.suggestions = suggestions;
     }
 }
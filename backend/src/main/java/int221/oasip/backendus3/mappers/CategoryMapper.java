@@ -0,0 +1,28 @@
+package int221.oasip.backendus3.mappers;
+
+import int221.oasip.backendus3.dtos.CategoryResponse;
+import int221.oasip.backendus3.entities.EventCategory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+public class CategoryMapper {
+    public CategoryResponse toResponse(EventCategory category) {
+        CategoryResponse response = new CategoryResponse();
+        response.setId(category.getId());
+        response.setEventCategoryName(category.getEventCategoryName());
+        response.setEventCategoryDescription(category.getEventCategoryDescription());
+        response.setEventDuration(category.getEventDuration());
+        return response;
+    }
+
+    public List<CategoryResponse> toResponses(List<EventCategory> categories) {
+        List<CategoryResponse> responses = new ArrayList<>(categories.size());
+        for (EventCategory category : categories) {
+            responses.add(toResponse(category));
+        }
+        return responses;
+    }
+}
@@ -0,0 +1,58 @@
+package int221.oasip.backendus3.mappers;
+
+import int221.oasip.backendus3.dtos.EventCategoryIdAndNameResponse;
+import int221.oasip.backendus3.dtos.EventResponse;
+import int221.oasip.backendus3.dtos.FileInfoResponse;
+import int221.oasip.backendus3.entities.Event;
+import int221.oasip.backendus3.entities.EventCategory;
+import int221.oasip.backendus3.entities.File;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+public class EventMapper {
+    public EventResponse toResponse(Event event) {
+        return toResponse(event, toCategoryIdAndNameResponse(event.getEventCategory()));
+    }
+
+    /**
+     * Map an event whose category is already known, so a lazy category is not loaded
+     */
+    public EventResponse toResponse(Event event, EventCategoryIdAndNameResponse category) {
+        EventResponse response = new EventResponse();
+        response.setId(event.getId());
+        response.setEventCategory(category);
+        response.setBookingName(event.getBookingName());
+        response.setBookingEmail(event.getBookingEmail());
+        response.setEventStartTime(event.getEventStartTime());
+        response.setEventDuration(event.getEventDuration());
+        response.setEventNotes(event.getEventNotes());
+        response.setFiles(toFileInfoResponses(event.getFiles()));
+        return response;
+    }
+
+    public EventCategoryIdAndNameResponse toCategoryIdAndNameResponse(EventCategory category) {
+        if (category == null) {
+            return null;
+        }
+        return new EventCategoryIdAndNameResponse(category.getId(), category.getEventCategoryName());
+    }
+
+    public FileInfoResponse toFileInfoResponse(File file) {
+        FileInfoResponse info = new FileInfoResponse();
+        info.setBucketId(file.getBucketId());
+        info.setName(file.getName());
+        info.setType(file.getType());
+        return info;
+    }
+
+    private List<FileInfoResponse> toFileInfoResponses(List<File> files) {
+        List<FileInfoResponse> infos = new ArrayList<>(files.size());
+        for (File file : files) {
+            infos.add(toFileInfoResponse(file));
+        }
+        return infos;
+    }
+}
@@ -0,0 +1,30 @@
+package int221.oasip.backendus3.mappers;
+
+import int221.oasip.backendus3.dtos.UserResponse;
+import int221.oasip.backendus3.entities.User;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+public class UserMapper {
+    public UserResponse toResponse(User user) {
+        UserResponse response = new UserResponse();
+        response.setId(user.getId());
+        response.setName(user.getName());
+        response.setEmail(user.getEmail());
+        response.setRole(user.getRole());
+        response.setCreatedOn(user.getCreatedOn());
+        response.setUpdatedOn(user.getUpdatedOn());
+        return response;
+    }
+
+    public List<UserResponse> toResponses(List<User> users) {
+        List<UserResponse> responses = new ArrayList<>(users.size());
+        for (User user : users) {
+            responses.add(toResponse(user));
+        }
+        return responses;
+    }
+}
@@ -1,23 +1,22 @@
 package int221.oasip.backendus3.repository;
 
 
-import int221.oasip.backendus3.entities.Event;
+import int221.oasip.backendus3.dtos.EventResponse;
 import org.springframework.lang.Nullable;
 
 import java.time.Instant;
-import java.util.Collection;
 import java.util.List;
 
 public interface CustomEventRepository {
-    List<Event> findPastEvents(Instant startAt, @Nullable Collection<Integer> categoryIds, String email);
+    boolean existsOverlapEventsByCategoryId(Instant startAt, Instant endAt, Integer categoryId, @Nullable Integer currentEventId);
 
-    List<Event> findUpcomingAndOngoingEvents(Instant startAt, @Nullable Collection<Integer> categoryIds, @Nullable String email);
+    List<EventInterval> findIntervalsEndingAfter(Instant instant);
 
-    List<Event> findOverlapEventsByCategoryId(Instant startAt, Instant endAt, Integer categoryId, @Nullable Integer currentEventId);
+    List<EventInterval> findOverlapIntervalsByCategoryId(Instant startAt, Instant endAt, Integer categoryId);
 
-//    List<Event> findByDateRange(Instant fromInclusive, Instant toExclusive, @Nullable List<Integer> categoryIds, Integer userId);
+    List<EventResponse> findResponses(EventFilter filter);
 
-    List<Event> findByDateRangeOfOneDay(Instant startAt, @Nullable Collection<Integer> categoryIds, @Nullable String email);
+    List<EventResponse> findPage(EventFilter filter, @Nullable EventCursor after, int limit);
 
-    List<Event> findByDateRangeOfOneDay(Instant startAt, @Nullable Collection<Integer> categoryIds, @Nullable String email, @Nullable Integer excludeEventId);
+    List<EventInterval> findIntervalsByDateRangeOfOneDay(Instant startAt, Integer categoryId);
 }
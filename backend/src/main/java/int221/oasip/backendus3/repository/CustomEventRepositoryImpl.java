@@ -1,62 +1,49 @@
 package int221.oasip.backendus3.repository;
 
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.Tuple;
 import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.Projections;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.jpa.impl.JPAQuery;
-import int221.oasip.backendus3.entities.Event;
+import int221.oasip.backendus3.dtos.EventResponse;
+import int221.oasip.backendus3.dtos.FileInfoResponse;
 import int221.oasip.backendus3.entities.QEvent;
+import int221.oasip.backendus3.entities.QEventCategory;
+import int221.oasip.backendus3.entities.QFile;
 import org.springframework.lang.Nullable;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 
 public class CustomEventRepositoryImpl implements CustomEventRepository {
+    /**
+     * Upper bound of {@code eventDuration}, see {@link int221.oasip.backendus3.dtos.EditCategoryRequest}.
+     * An event ending after an instant must have started less than this duration before it,
+     * which lets the predicates on the end time also use a range on the indexed start time.
+     */
+    public static final int MAX_EVENT_DURATION_MINUTES = 480;
+
+    private static final int FILE_QUERY_BATCH_SIZE = 1000;
 
     private final QEvent event = QEvent.event;
+    private final QEventCategory category = QEventCategory.eventCategory;
+    private final QFile file = QFile.file;
     @PersistenceContext
     private EntityManager entityManager;
 
-    /**
-     * Get past events (events that ended before or at the {@code startAt} time)
-     * <p>{@code categoryIds} is optional. If it is not null, only events with category id in the list will be returned.
-     * <p>{@code email} is optional. If it is not null, only events with that email will be returned.
-     *
-     * @param startAt     start time of event
-     * @param categoryIds list of category ids
-     * @param email       email of user
-     * @return list of events that ended before or at the {@code startAt}
-     */
-    public List<Event> findPastEvents(Instant startAt, @Nullable Collection<Integer> categoryIds, String email) {
-        return getQueryWithCategoryIdsAndEmail(categoryIds, email)
-                .where(event.eventEndTime.loe(startAt))
-                .fetch();
+    private BooleanExpression endsAtOrBefore(Instant instant) {
+        // an event that ended at the instant must have started before it
+        return event.eventStartTime.lt(instant).and(event.eventEndTime.loe(instant));
     }
 
-    /**
-     * Get upcoming and ongoing events (events that end after the {@code startAt} time)
-     * <p>{@code categoryIds} is optional. If it is not null, only events with category id in the list will be returned.
-     * <p>{@code email} is optional. If it is not null, only events with that email will be returned.
-     *
-     * @param startAt     start time of event
-     * @param categoryIds list of category ids
-     * @param email       email of user
-     * @return list of events that started before the {@code startAt} or ended after the {@code startAt}
-     */
-    public List<Event> findUpcomingAndOngoingEvents(Instant startAt, @Nullable Collection<Integer> categoryIds, @Nullable String email) {
-        return getQueryWithCategoryIdsAndEmail(categoryIds, email)
-                .where(event.eventEndTime.gt(startAt))
-                .fetch();
-    }
-
-    private JPAQuery<Event> getQueryWithCategoryIdsAndEmail(@Nullable Collection<Integer> categoryIds, @Nullable String email) {
-        return getQuery()
-                .from(event)
-                .where(withCategoryIdsAndBookingEmail(categoryIds, email));
+    private BooleanExpression endsAfter(Instant instant) {
+        return event.eventStartTime.gt(instant.minus(MAX_EVENT_DURATION_MINUTES, ChronoUnit.MINUTES))
+                .and(event.eventEndTime.gt(instant));
     }
 
     private Predicate withCategoryIdsAndBookingEmail(@Nullable Collection<Integer> categoryIds, @Nullable String email) {
@@ -70,74 +57,198 @@ public class CustomEventRepositoryImpl implements CustomEventRepository {
         return predicate;
     }
 
-    private JPAQuery<Event> getQuery() {
-        return new JPAQuery<>(entityManager);
-    }
-
     /**
-     * Get all overlap events. There are two scenarios:
+     * Check if there is any overlap event, that is an event that started before the {@code endTime} and ended after the {@code startTime}.
+     * This covers two scenarios:
      * <ol>
      *     <li>Events that started before the {@code startTime} and ended after the {@code startTime}</li>
      *     <li>Events that started between the {@code startTime} (inclusive) and the {@code endTime} (exclusive)</li>
      * </ol>
-     * {@code currentEventId} is optional. If it is not null, the event with the id will be excluded from the result.
+     * {@code currentEventId} is optional. If it is not null, the event with the id will be excluded.
+     * Only the id of the first match is fetched, so no entity is loaded.
      *
      * @param startAt        start time of event
      * @param endAt          end time of event
      * @param categoryId     category id of event
      * @param currentEventId current event id
-     * @return list of overlap events
+     * @return true if at least one event overlaps
      */
-    public List<Event> findOverlapEventsByCategoryId(Instant startAt, Instant endAt, Integer categoryId, @Nullable Integer currentEventId) {
-        BooleanExpression isStartTimeOverlapped = event.eventStartTime.lt(startAt).and(event.eventEndTime.gt(startAt));
-        BooleanExpression isEndTimeOverlapped = event.eventStartTime.goe(startAt).and(event.eventStartTime.lt(endAt));
-        BooleanExpression isOverlapped = isStartTimeOverlapped.or(isEndTimeOverlapped);
-
-        JPAQuery<Event> query = getQuery()
+    public boolean existsOverlapEventsByCategoryId(Instant startAt, Instant endAt, Integer categoryId, @Nullable Integer currentEventId) {
+        Integer overlapEventId = new JPAQuery<Integer>(entityManager)
+                .select(event.id)
                 .from(event)
-                .where(event.eventCategory.id.eq(categoryId))
-                .where(isOverlapped);
+                .where(isOverlappedInCategory(startAt, endAt, categoryId, currentEventId))
+                .fetchFirst();
+        return overlapEventId != null;
+    }
+
+    private Predicate isOverlappedInCategory(Instant startAt, Instant endAt, Integer categoryId, @Nullable Integer currentEventId) {
+        // a single range on eventStartTime, so (eventCategoryId, eventStartTime, eventEndTime) can be used
+        BooleanExpression predicate = event.eventCategory.id.eq(categoryId)
+                .and(endsAfter(startAt))
+                .and(event.eventStartTime.lt(endAt));
 
         if (currentEventId != null) {
-            query.where(event.id.ne(currentEventId));
+            predicate = predicate.and(event.id.ne(currentEventId));
         }
 
-        return query.fetch();
+        return predicate;
     }
 
-    @Override
-    public List<Event> findByDateRangeOfOneDay(Instant startAt, Collection<Integer> categoryIds, String email) {
-        return findByDateRangeOfOneDay(startAt, categoryIds, email, null);
+    /**
+     * Get the time range of every event that ends after the {@code instant}, without loading the events
+     *
+     * @param instant the instant to compare the end time with
+     * @return list of intervals of events that have not ended at the {@code instant}
+     */
+    public List<EventInterval> findIntervalsEndingAfter(Instant instant) {
+        return new JPAQuery<EventInterval>(entityManager)
+                .select(Projections.constructor(EventInterval.class,
+                        event.id, event.eventCategory.id, event.eventStartTime, event.eventDuration))
+                .from(event)
+                .where(endsAfter(instant))
+                .fetch();
     }
 
     /**
-     * Get all events that started in the selected day, starting from {@code startAt} (inclusive) to {@code startAt + 1 day} (exclusive)
-     * <p>{@code categoryIds} is optional. If it is not null, only events with category id in the list will be returned.
-     * <p>{@code email} is optional. If it is not null, only events with that email will be returned.
-     * <p>{@code excludeEventId} is optional. If it is not null, the event with the id will be excluded from the result.
+     * Get the time range of the events in a category that overlap with {@code [startAt, endAt)},
+     * using the same rules as {@link #existsOverlapEventsByCategoryId}
      *
-     * @param startAt        start time of event
-     * @param categoryIds    list of category ids
-     * @param email          email of user
-     * @param excludeEventId event id to be excluded
-     * @return list of events in the same day
+     * @param startAt    start of the range
+     * @param endAt      end of the range
+     * @param categoryId category id of events
+     * @return list of intervals of overlap events
      */
-    public List<Event> findByDateRangeOfOneDay(Instant startAt, @Nullable Collection<Integer> categoryIds, @Nullable String email, @Nullable Integer excludeEventId) {
-        Instant endAt = startAt.plus(1, ChronoUnit.DAYS);
-        return findByDateRange(startAt, endAt, categoryIds, email, excludeEventId);
+    public List<EventInterval> findOverlapIntervalsByCategoryId(Instant startAt, Instant endAt, Integer categoryId) {
+        return new JPAQuery<EventInterval>(entityManager)
+                .select(Projections.constructor(EventInterval.class,
+                        event.id, event.eventCategory.id, event.eventStartTime, event.eventDuration))
+                .from(event)
+                .where(isOverlappedInCategory(startAt, endAt, categoryId, null))
+                .fetch();
     }
 
-    private List<Event> findByDateRange(Instant fromInclusive, Instant toExclusive, @Nullable Collection<Integer> categoryIds, @Nullable String email, @Nullable Integer excludeEventId) {
-        JPAQuery<Event> query = getQuery()
+    /**
+     * Get all events matching the {@code filter} as responses, ordered by start time then id.
+     * <p>The responses are created directly from the columns, so no entity is loaded into the persistence context.
+     *
+     * @param filter filter of events
+     * @return list of event responses with their files
+     */
+    public List<EventResponse> findResponses(EventFilter filter) {
+        List<EventResponse> responses = getResponseQuery()
+                .where(withFilter(filter))
+                .orderBy(event.eventStartTime.asc(), event.id.asc())
+                .fetch();
+        return withFiles(responses);
+    }
+
+    /**
+     * Get at most {@code limit} events matching the {@code filter} as responses, ordered by start time then id.
+     * <p>{@code after} is optional. If it is not null, only events positioned after the cursor will be returned,
+     * so the next page can be found through the index instead of skipping rows with an offset.
+     *
+     * @param filter filter of events
+     * @param after  cursor of the last event of the previous page
+     * @param limit  maximum number of events
+     * @return list of event responses with their files, ordered by start time then id
+     */
+    public List<EventResponse> findPage(EventFilter filter, @Nullable EventCursor after, int limit) {
+        JPAQuery<EventResponse> query = getResponseQuery()
+                .where(withFilter(filter));
+
+        if (after != null) {
+            query.where(isAfter(after));
+        }
+
+        List<EventResponse> responses = query
+                .orderBy(event.eventStartTime.asc(), event.id.asc())
+                .limit(limit)
+                .fetch();
+        return withFiles(responses);
+    }
+
+    /**
+     * Get the time range of the events in a category that started in the selected day,
+     * from {@code startAt} (inclusive) to {@code startAt + 1 day} (exclusive)
+     *
+     * @param startAt    start time of the day
+     * @param categoryId category id of events
+     * @return list of intervals ordered by start time
+     */
+    public List<EventInterval> findIntervalsByDateRangeOfOneDay(Instant startAt, Integer categoryId) {
+        return new JPAQuery<EventInterval>(entityManager)
+                .select(Projections.constructor(EventInterval.class,
+                        event.id, event.eventCategory.id, event.eventStartTime, event.eventDuration))
                 .from(event)
-                .where(event.eventStartTime.goe(fromInclusive))
-                .where(event.eventStartTime.lt(toExclusive))
-                .where(withCategoryIdsAndBookingEmail(categoryIds, email));
+                .where(event.eventCategory.id.eq(categoryId))
+                .where(event.eventStartTime.goe(startAt))
+                .where(event.eventStartTime.lt(startAt.plus(1, ChronoUnit.DAYS)))
+                .orderBy(event.eventStartTime.asc(), event.id.asc())
+                .fetch();
+    }
 
-        if (excludeEventId != null) {
-            query.where(event.id.ne(excludeEventId));
+    private JPAQuery<EventResponse> getResponseQuery() {
+        return new JPAQuery<EventResponse>(entityManager)
+                .select(Projections.constructor(EventResponse.class,
+                        event.id, category.id, category.eventCategoryName, event.bookingName, event.bookingEmail,
+                        event.eventStartTime, event.eventDuration, event.eventNotes))
+                .from(event)
+                .join(event.eventCategory, category);
+    }
+
+    /**
+     * Add the files to the responses, using one query for every {@value #FILE_QUERY_BATCH_SIZE} events
+     *
+     * @param responses responses created by {@link #getResponseQuery()}
+     * @return the same responses
+     */
+    private List<EventResponse> withFiles(List<EventResponse> responses) {
+        Map<Integer, EventResponse> responsesById = new HashMap<>();
+        for (EventResponse response : responses) {
+            responsesById.put(response.getId(), response);
+        }
+
+        List<Integer> eventIds = new ArrayList<>(responsesById.keySet());
+        for (int from = 0; from < eventIds.size(); from += FILE_QUERY_BATCH_SIZE) {
+            List<Integer> batch = eventIds.subList(from, Math.min(from + FILE_QUERY_BATCH_SIZE, eventIds.size()));
+            List<Tuple> rows = new JPAQuery<Tuple>(entityManager)
+                    .select(file.event.id, file.bucketId, file.name, file.type)
+                    .from(file)
+                    .where(file.event.id.in(batch))
+                    .fetch();
+
+            for (Tuple row : rows) {
+                FileInfoResponse info = new FileInfoResponse();
+                info.setBucketId(row.get(file.bucketId));
+                info.setName(row.get(file.name));
+                info.setType(row.get(file.type));
+                responsesById.get(row.get(file.event.id)).getFiles().add(info);
+            }
+        }
+
+        return responses;
+    }
+
+    private Predicate withFilter(EventFilter filter) {
+        BooleanBuilder predicate = new BooleanBuilder(withCategoryIdsAndBookingEmail(filter.getCategoryIds(), filter.getEmail()));
+        if (filter.getStartFrom() != null) {
+            predicate.and(event.eventStartTime.goe(filter.getStartFrom()));
+        }
+        if (filter.getStartBefore() != null) {
+            predicate.and(event.eventStartTime.lt(filter.getStartBefore()));
         }
+        if (filter.getEndAfter() != null) {
+            predicate.and(endsAfter(filter.getEndAfter()));
+        }
+        if (filter.getEndAtOrBefore() != null) {
+            predicate.and(endsAtOrBefore(filter.getEndAtOrBefore()));
+        }
+        return predicate;
+    }
 
-        return query.fetch();
+    private Predicate isAfter(EventCursor cursor) {
+        return event.eventStartTime.gt(cursor.getStartTime())
+                .or(event.eventStartTime.eq(cursor.getStartTime()).and(event.id.gt(cursor.getEventId())));
     }
 }
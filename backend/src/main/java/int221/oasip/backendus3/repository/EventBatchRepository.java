@@ -0,0 +1,74 @@
+package int221.oasip.backendus3.repository;
+
+import int221.oasip.backendus3.entities.Event;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Insert many events with JDBC batches instead of one {@code saveAndFlush} per event.
+ * <p>It runs on the connection of the current transaction, so it commits or rolls back with the JPA writes around it.
+ */
+@Repository
+@RequiredArgsConstructor
+public class EventBatchRepository {
+    static final int BATCH_SIZE = 500;
+    private static final String INSERT_EVENT = "INSERT INTO event " +
+            "(eventCategoryId, bookingName, bookingEmail, eventStartTime, eventDuration, eventNotes) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insert the events in batches of {@value #BATCH_SIZE} and set their generated ids.
+     * The events are not attached to the persistence context and their files are not inserted.
+     *
+     * @param events new events, with their category and duration set
+     */
+    public void insertAll(List<Event> events) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_EVENT, Statement.RETURN_GENERATED_KEYS)) {
+                for (int from = 0; from < events.size(); from += BATCH_SIZE) {
+                    List<Event> batch = events.subList(from, Math.min(from + BATCH_SIZE, events.size()));
+                    for (Event event : batch) {
+                        statement.setInt(1, event.getEventCategory().getId());
+                        statement.setString(2, event.getBookingName());
+                        statement.setString(3, event.getBookingEmail());
+                        statement.setTimestamp(4, Timestamp.from(event.getEventStartTime()));
+                        statement.setInt(5, event.getEventDuration());
+                        if (event.getEventNotes() == null) {
+                            statement.setNull(6, Types.VARCHAR);
+                        } else {
+                            statement.setString(6, event.getEventNotes());
+                        }
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    setGeneratedIds(statement, batch);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static void setGeneratedIds(PreparedStatement statement, List<Event> batch) throws SQLException {
+        int count = 0;
+        try (ResultSet keys = statement.getGeneratedKeys()) {
+            while (keys.next() && count < batch.size()) {
+                batch.get(count++).setId(keys.getInt(1));
+            }
+        }
+        if (count != batch.size()) {
+            throw new IncorrectResultSizeDataAccessException("Generated ids of inserted events", batch.size(), count);
+        }
+    }
+}
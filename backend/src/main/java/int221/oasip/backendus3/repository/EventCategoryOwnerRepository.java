@@ -1,12 +1,41 @@
 package int221.oasip.backendus3.repository;
 
 import int221.oasip.backendus3.entities.EventCategoryOwner;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
 public interface EventCategoryOwnerRepository extends JpaRepository<EventCategoryOwner, Integer> {
+    @Override
+    @EntityGraph(EventCategoryOwner.GRAPH_WITH_CATEGORY)
+    List<EventCategoryOwner> findAll();
+
+    @EntityGraph(EventCategoryOwner.GRAPH_WITH_CATEGORY)
     List<EventCategoryOwner> findByOwnerEmail(String email);
+
+    @Query("SELECT O.eventCategory.id FROM EventCategoryOwner O WHERE O.ownerEmail = :email")
+    List<Integer> findCategoryIdsByOwnerEmail(String email);
+
+    /**
+     * Categories owned by the email, sorted by name, each with its number of owners
+     */
+    @Query("SELECT new int221.oasip.backendus3.repository.OwnedCategory(C.eventCategoryName, COUNT(A)) " +
+            "FROM EventCategoryOwner O JOIN O.eventCategory C JOIN C.owners A " +
+            "WHERE O.ownerEmail = :email GROUP BY C.id, C.eventCategoryName ORDER BY C.eventCategoryName")
+    List<OwnedCategory> findOwnedCategoriesByOwnerEmail(String email);
+
+    /**
+     * Remove the email from the owners of every category in one statement.
+     * The entity listeners are not called, so the caller invalidates the ownership cache.
+     *
+     * @return the number of removed owners
+     */
+    @Modifying
+    @Query("DELETE FROM EventCategoryOwner O WHERE O.ownerEmail = :email")
+    int deleteByOwnerEmail(String email);
 }
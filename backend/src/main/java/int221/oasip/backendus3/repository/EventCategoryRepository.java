@@ -2,11 +2,23 @@ package int221.oasip.backendus3.repository;
 
 import int221.oasip.backendus3.entities.EventCategory;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 
+import javax.persistence.LockModeType;
 import java.util.List;
+import java.util.Optional;
 
 public interface EventCategoryRepository extends JpaRepository<EventCategory, Integer> {
     EventCategory findByEventCategoryNameIgnoreCase(String name);
 
     List<EventCategory> findByOwners_OwnerEmail(String email);
+
+    /**
+     * Lock the row of the category until the end of the current transaction ({@code SELECT ... FOR UPDATE}),
+     * so the bookings of a category are serialized across every backend sharing the database
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT C FROM EventCategory C WHERE C.id = :id")
+    Optional<EventCategory> lockById(Integer id);
 }
@@ -0,0 +1,51 @@
+package int221.oasip.backendus3.repository;
+
+import int221.oasip.backendus3.dtos.EventResponse;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Position of an event in the {@code (eventStartTime, eventId)} order, used for keyset pagination.
+ * It is exposed to clients as an opaque string.
+ */
+@Getter
+@RequiredArgsConstructor
+public class EventCursor {
+    private static final String SEPARATOR = "_";
+    private final Instant startTime;
+    private final Integer eventId;
+
+    public static EventCursor of(EventResponse event) {
+        return new EventCursor(event.getEventStartTime(), event.getId());
+    }
+
+    /**
+     * Parse a cursor from the string returned by {@link #encode()}
+     *
+     * @param encoded the encoded cursor
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the {@code encoded} is not a valid cursor
+     */
+    public static EventCursor decode(String encoded) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            String[] parts = decoded.split(SEPARATOR);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new EventCursor(Instant.ofEpochMilli(Long.parseLong(parts[0])), Integer.valueOf(parts[1]));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException is also an IllegalArgumentException
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    public String encode() {
+        String raw = startTime.toEpochMilli() + SEPARATOR + eventId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
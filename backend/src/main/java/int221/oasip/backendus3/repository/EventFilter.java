@@ -0,0 +1,40 @@
+package int221.oasip.backendus3.repository;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.lang.Nullable;
+
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Filter for {@link CustomEventRepository#findPage}, every field is optional and a null field is not used to filter
+ */
+@Getter
+@Setter
+public class EventFilter {
+    @Nullable
+    private Collection<Integer> categoryIds;
+    @Nullable
+    private String email;
+    /**
+     * Inclusive lower bound of the event start time
+     */
+    @Nullable
+    private Instant startFrom;
+    /**
+     * Exclusive upper bound of the event start time
+     */
+    @Nullable
+    private Instant startBefore;
+    /**
+     * Exclusive lower bound of the event end time
+     */
+    @Nullable
+    private Instant endAfter;
+    /**
+     * Inclusive upper bound of the event end time
+     */
+    @Nullable
+    private Instant endAtOrBefore;
+}
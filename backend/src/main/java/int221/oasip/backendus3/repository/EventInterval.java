@@ -0,0 +1,24 @@
+package int221.oasip.backendus3.repository;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Lightweight projection of an event's time range, used where the whole {@link int221.oasip.backendus3.entities.Event} is not needed
+ */
+@Getter
+public class EventInterval {
+    private final Integer eventId;
+    private final Integer categoryId;
+    private final Instant startTime;
+    private final Instant endTime;
+
+    public EventInterval(Integer eventId, Integer categoryId, Instant startTime, Integer duration) {
+        this.eventId = eventId;
+        this.categoryId = categoryId;
+        this.startTime = startTime;
+        this.endTime = startTime.plus(duration, ChronoUnit.MINUTES);
+    }
+}
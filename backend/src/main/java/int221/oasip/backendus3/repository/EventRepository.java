@@ -1,19 +1,17 @@
 package int221.oasip.backendus3.repository;
 
 import int221.oasip.backendus3.entities.Event;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.lang.Nullable;
 
-import java.util.Collection;
-import java.util.List;
+import java.util.Optional;
 
 public interface EventRepository extends JpaRepository<Event, Integer>, CustomEventRepository {
-    @Query("SELECT E FROM Event E WHERE E.eventCategory.id IN :categoryIds AND " +
-            "(:email IS NULL OR :email = E.bookingEmail)")
-    List<Event> findByEventCategory_IdInAndBookingEmail(Collection<Integer> categoryIds, @Nullable String email);
+    @Override
+    @EntityGraph(Event.GRAPH_WITH_CATEGORY_AND_FILES)
+    Optional<Event> findById(Integer id);
 
-    List<Event> findByBookingEmail(String email);
-
-    List<Event> findByEventCategory_IdIn(Collection<Integer> categoryIds);
+    @Query("SELECT E.eventCategory.id FROM Event E WHERE E.id = :id")
+    Optional<Integer> findCategoryIdById(Integer id);
 }
\ No newline at end of file
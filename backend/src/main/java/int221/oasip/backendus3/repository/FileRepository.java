@@ -2,6 +2,17 @@ package int221.oasip.backendus3.repository;
 
 import int221.oasip.backendus3.entities.File;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
 
 public interface FileRepository extends JpaRepository<File, Integer> {
-}
\ No newline at end of file
+    Optional<File> findFirstByBucketIdAndName(String bucketId, String name);
+
+    /**
+     * Count the rows referencing a blob, in its own transaction since it is called after the deleting transaction completes
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    long countBySha256(String sha256);
+}
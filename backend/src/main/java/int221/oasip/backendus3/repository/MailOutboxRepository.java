@@ -0,0 +1,44 @@
+package int221.oasip.backendus3.repository;
+
+import int221.oasip.backendus3.entities.MailOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.lang.Nullable;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface MailOutboxRepository extends JpaRepository<MailOutbox, Integer> {
+    List<MailOutbox> findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(MailOutbox.Status status, Instant instant, Pageable pageable);
+
+    /**
+     * Claim a due mail by moving its next attempt to {@code leaseUntil}.
+     * Only one poller can claim a mail, even with several backend instances.
+     *
+     * @return 1 if the mail is claimed, 0 if it is not due anymore
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MailOutbox M SET M.nextAttemptAt = :leaseUntil, M.attempts = M.attempts + 1 " +
+            "WHERE M.id = :id AND M.status = :status AND M.nextAttemptAt <= :now")
+    int claim(Integer id, MailOutbox.Status status, Instant now, Instant leaseUntil);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE MailOutbox M SET M.status = :status, M.nextAttemptAt = :nextAttemptAt, M.lastError = :lastError WHERE M.id = :id")
+    int updateStatus(Integer id, MailOutbox.Status status, Instant nextAttemptAt, @Nullable String lastError);
+
+    /**
+     * Delete the mails that are done, for the sent and failed mails {@code nextAttemptAt} is their last attempt
+     *
+     * @return number of deleted mails
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MailOutbox M WHERE M.status IN :statuses AND M.nextAttemptAt < :before")
+    int deleteCompleted(Collection<MailOutbox.Status> statuses, Instant before);
+}
@@ -0,0 +1,17 @@
+package int221.oasip.backendus3.repository;
+
+import lombok.Getter;
+
+/**
+ * Projection of a category owned by a user, with the number of owners of the category
+ */
+@Getter
+public class OwnedCategory {
+    private final String name;
+    private final long ownerCount;
+
+    public OwnedCategory(String name, Long ownerCount) {
+        this.name = name;
+        this.ownerCount = ownerCount;
+    }
+}
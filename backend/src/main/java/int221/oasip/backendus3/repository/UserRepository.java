@@ -2,12 +2,23 @@ package int221.oasip.backendus3.repository;
 
 import int221.oasip.backendus3.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Integer> {
-    Optional<User> findByName(String name);
     Optional<User> findByEmail(String email);
+
+    /**
+     * In its own transaction since it is called after a failed write, whose session must not be flushed again
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
     boolean existsByName(String name);
+
+    /**
+     * In its own transaction since it is called after a failed write, whose session must not be flushed again
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
     boolean existsByEmail(String email);
 }
@@ -3,30 +3,33 @@ package int221.oasip.backendus3.services;
 import int221.oasip.backendus3.dtos.CategoryResponse;
 import int221.oasip.backendus3.dtos.EditCategoryRequest;
 import int221.oasip.backendus3.entities.EventCategory;
-import int221.oasip.backendus3.entities.EventCategoryOwner;
 import int221.oasip.backendus3.exceptions.EntityNotFoundException;
 import int221.oasip.backendus3.exceptions.FieldNotValidException;
 import int221.oasip.backendus3.exceptions.NotUniqueException;
-import int221.oasip.backendus3.repository.EventCategoryOwnerRepository;
+import int221.oasip.backendus3.mappers.CategoryMapper;
 import int221.oasip.backendus3.repository.EventCategoryRepository;
-import int221.oasip.backendus3.utils.ModelMapperUtils;
+import int221.oasip.backendus3.services.cache.CategoryCatalogue;
+import int221.oasip.backendus3.services.cache.CategoryOwnershipCache;
 import lombok.AllArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @AllArgsConstructor
 public class EventCategoryService {
     private EventCategoryRepository repository;
-    private ModelMapper modelMapper;
-    private ModelMapperUtils modelMapperUtils;
-    private EventCategoryOwnerRepository eventCategoryOwnerRepository;
+    private CategoryMapper categoryMapper;
+    private CategoryCatalogue categoryCatalogue;
+    private CategoryOwnershipCache ownershipCache;
 
     public List<CategoryResponse> getAll() {
-        return modelMapperUtils.mapList(repository.findAll(), CategoryResponse.class);
+        return categoryCatalogue.get().getCategories();
+    }
+
+    public CategoryCatalogue.Snapshot getCatalogue() {
+        return categoryCatalogue.get();
     }
 
     public CategoryResponse update(Integer id, EditCategoryRequest editCategory) {
@@ -54,11 +57,17 @@ public class EventCategoryService {
             category.setEventDuration(editCategory.getEventDuration());
         }
 
-        return modelMapper.map(repository.saveAndFlush(category), CategoryResponse.class);
+        CategoryResponse response = categoryMapper.toResponse(repository.saveAndFlush(category));
+        categoryCatalogue.invalidate();
+        return response;
     }
 
     public List<CategoryResponse> getLecturerCategories(String email) {
-        List<EventCategory> categories = eventCategoryOwnerRepository.findByOwnerEmail(email).stream().map(EventCategoryOwner::getEventCategory).collect(Collectors.toList());
-        return modelMapperUtils.mapList(categories, CategoryResponse.class);
+        CategoryCatalogue.Snapshot catalogue = categoryCatalogue.get();
+        List<CategoryResponse> categories = new ArrayList<>();
+        for (int categoryId : ownershipCache.getCategoryIds(email)) {
+            catalogue.findById(categoryId).ifPresent(categories::add);
+        }
+        return categories;
     }
 }
\ No newline at end of file
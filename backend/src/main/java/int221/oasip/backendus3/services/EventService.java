@@ -2,44 +2,68 @@ package int221.oasip.backendus3.services;
 
 import int221.oasip.backendus3.dtos.*;
 import int221.oasip.backendus3.entities.Event;
-import int221.oasip.backendus3.entities.EventCategory;
 import int221.oasip.backendus3.entities.File;
 import int221.oasip.backendus3.exceptions.EntityNotFoundException;
 import int221.oasip.backendus3.exceptions.EventOverlapException;
 import int221.oasip.backendus3.exceptions.ForbiddenException;
-import int221.oasip.backendus3.repository.EventCategoryOwnerRepository;
+import int221.oasip.backendus3.mappers.EventMapper;
 import int221.oasip.backendus3.repository.EventCategoryRepository;
+import int221.oasip.backendus3.repository.EventCursor;
+import int221.oasip.backendus3.repository.EventFilter;
 import int221.oasip.backendus3.repository.EventRepository;
 import int221.oasip.backendus3.services.auth.AuthStatus;
 import int221.oasip.backendus3.services.auth.AuthUtil;
+import int221.oasip.backendus3.services.booking.BookingAdmission;
+import int221.oasip.backendus3.services.booking.EventIntervalIndex;
+import int221.oasip.backendus3.services.booking.FreeSlotFinder;
+import int221.oasip.backendus3.services.booking.OverlapChecker;
+import int221.oasip.backendus3.services.cache.AvailabilityCache;
+import int221.oasip.backendus3.services.cache.CategoryCatalogue;
+import int221.oasip.backendus3.services.cache.CategoryOwnershipCache;
+import int221.oasip.backendus3.services.mail.MailOutboxService;
+import int221.oasip.backendus3.services.metrics.EventMetrics;
+import io.micrometer.core.instrument.Timer;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.Nullable;
-import javax.mail.MessagingException;
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.Collection;
-import java.util.List;
-import java.util.Set;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class EventService {
+    private static final Duration SLOT_SEARCH_RANGE = Duration.ofHours(12);
+
     private final EventRepository repository;
-    private final ModelMapper modelMapper;
+    private final EventMapper eventMapper;
     private final EventCategoryRepository categoryRepository;
-    private final EventCategoryOwnerRepository categoryOwnerRepository;
     private final FileService fileService;
     private final MailService mailService;
+    private final MailOutboxService mailOutboxService;
     private final AuthUtil authUtil;
+    private final EventIntervalIndex intervalIndex;
+    private final OverlapChecker overlapChecker;
+    private final CategoryOwnershipCache ownershipCache;
+    private final CategoryCatalogue categoryCatalogue;
+    private final AvailabilityCache availabilityCache;
+    private final EventMetrics metrics;
+    private final BookingAdmission admission;
+    /**
+     * Number of free slots added to an overlap error, 0 to disable
+     */
+    @Value("${events.overlap.suggestions:3}")
+    private int overlapSuggestions;
     private final ForbiddenException COMMON_FORBIDDEN_EXCEPTION = new ForbiddenException("User with this email is not allowed to access this resource");
 
     public EventResponse getEvent(Integer id) {
@@ -47,7 +71,22 @@ public class EventService {
         return mapEventToEventResponse(event);
     }
 
-    public EventResponse create(CreateEventMultipartRequest newEvent) throws MessagingException, IOException {
+    /**
+     * Create the event and queue its confirmation mail in one transaction,
+     * the mail is sent in the background by {@link int221.oasip.backendus3.services.mail.MailOutboxWorker}.
+     * <p>The transaction is admitted by {@link BookingAdmission}, so no other booking of the category
+     * can pass the overlap check before this one commits.
+     */
+    public EventResponse create(CreateEventMultipartRequest newEvent) throws IOException {
+        Timer.Sample sample = Timer.start();
+        try {
+            return admission.admit(newEvent.getEventCategoryId(), () -> createEvent(newEvent));
+        } finally {
+            sample.stop(metrics.getCreateTimer());
+        }
+    }
+
+    private EventResponse createEvent(CreateEventMultipartRequest newEvent) throws IOException {
         Event event = new Event();
         event.setBookingName(newEvent.getBookingName().strip());
         event.setBookingEmail(newEvent.getBookingEmail().strip());
@@ -59,19 +98,25 @@ public class EventService {
         assertEventOwner(event);
 
         Integer categoryId = newEvent.getEventCategoryId();
-        EventCategory category = categoryRepository.findById(categoryId)
+        CategoryResponse category = categoryCatalogue.get().findById(categoryId)
                 .orElseThrow(() -> new EntityNotFoundException("Event category with id " + categoryId + " not found"));
-        event.setEventCategory(category);
+        event.setEventCategory(categoryRepository.getById(categoryId), category.getEventDuration());
 
-        List<Event> overlapEvents = getOverlapEvents(event);
-        if (overlapEvents.size() > 0) {
-            throw new EventOverlapException();
+        Instant startTime = event.getEventStartTime();
+        Instant endTime = startTime.plus(event.getEventDuration(), ChronoUnit.MINUTES);
+        if (overlapChecker.hasOverlap(startTime, endTime, categoryId, null)) {
+            metrics.getCreateOverlapRejections().increment();
+            throw new EventOverlapException(getOverlapSuggestions(categoryId, event.getEventDuration(), startTime, null));
         }
 
         setFileForEventIfExist(event, newEvent.getFile());
-        mailService.sendmail(event);
 
-        return mapEventToEventResponse(saveAndRefresh(event));
+        // the category is an uninitialized reference, use the name from the catalogue
+        Event savedEvent = repository.saveAndFlush(event);
+        mailOutboxService.enqueue(mailService.createBookingConfirmation(savedEvent, category.getEventCategoryName()));
+        intervalIndex.put(savedEvent);
+        availabilityCache.invalidate(categoryId, savedEvent.getEventStartTime());
+        return eventMapper.toResponse(savedEvent, new EventCategoryIdAndNameResponse(categoryId, category.getEventCategoryName()));
     }
 
     private Event saveAndRefresh(Event event) {
@@ -80,45 +125,20 @@ public class EventService {
     }
 
     private EventResponse mapEventToEventResponse(Event event) {
-        EventResponse eventResponse = modelMapper.map(event, EventResponse.class);
-        List<FileInfoResponse> files = event.getFiles().stream().map(file -> {
-            FileInfoResponse info = new FileInfoResponse();
-            info.setBucketId(file.getBucketId());
-            info.setName(file.getName());
-            info.setType(file.getType());
-            return info;
-        }).collect(Collectors.toList());
-
-        eventResponse.setFiles(files);
-
-        return eventResponse;
-    }
-
-    private List<EventResponse> mapEventsToEventResponses(List<Event> events) {
-        return events.stream().map(this::mapEventToEventResponse).collect(Collectors.toList());
+        return eventMapper.toResponse(event);
     }
 
     private void setFileForEventIfExist(Event event, MultipartFile file) throws IOException {
         if (file != null && !file.isEmpty()) {
             String bucketId = UUID.randomUUID().toString();
-            fileService.uploadFile(bucketId, file);
-            File fileEntity = new File();
-            fileEntity.setBucketId(bucketId);
-            fileEntity.setName(file.getOriginalFilename());
-            fileEntity.setType(file.getContentType());
+            File fileEntity = fileService.uploadFile(bucketId, file);
             fileEntity.setEvent(event);
             fileService.create(fileEntity);
             event.getFiles().add(fileEntity);
-            System.out.println("Created file " + fileEntity.getId() + " bucketId " + fileEntity.getBucketId());
+            log.debug("Created file {} in bucket {}", fileEntity.getName(), fileEntity.getBucketId());
         }
     }
 
-    private List<Event> getOverlapEvents(Event event) {
-        Instant startTime = event.getEventStartTime();
-        Instant endTime = startTime.plus(event.getEventDuration(), ChronoUnit.MINUTES);
-        return repository.findOverlapEventsByCategoryId(startTime, endTime, event.getEventCategory().getId(), null);
-    }
-
     private void assertEventOwner(Event event) {
         AuthStatus authStatus = authUtil.getAuthStatus();
         Authentication authentication = authStatus.getAuthentication();
@@ -129,10 +149,23 @@ public class EventService {
         }
     }
 
+    @Transactional
     public void delete(Integer id) {
+        Timer.Sample sample = Timer.start();
+        try {
+            deleteEvent(id);
+        } finally {
+            sample.stop(metrics.getDeleteTimer());
+        }
+    }
+
+    private void deleteEvent(Integer id) {
         Event event = getEventIfAuthorized(id);
-        removeFileFromEvent(event);
-        repository.deleteById(id);
+        // keep the files in the collection so deleting the event cascades to their rows
+        deleteStoredFiles(event);
+        repository.delete(event);
+        intervalIndex.remove(event);
+        availabilityCache.invalidate(event.getEventCategory().getId(), event.getEventStartTime());
     }
 
     private Event getEventIfAuthorized(Integer id) {
@@ -150,8 +183,23 @@ public class EventService {
         return event;
     }
 
+    /**
+     * Update the event in a transaction admitted by {@link BookingAdmission}, like {@link #create}
+     */
     public EventResponse update(Integer id, EditEventMultipartRequest editEvent) throws IOException {
+        Timer.Sample sample = Timer.start();
+        try {
+            Integer categoryId = repository.findCategoryIdById(id)
+                    .orElseThrow(() -> new EntityNotFoundException("Event with id " + id + " not found"));
+            return admission.admit(categoryId, () -> updateEvent(id, editEvent));
+        } finally {
+            sample.stop(metrics.getUpdateTimer());
+        }
+    }
+
+    private EventResponse updateEvent(Integer id, EditEventMultipartRequest editEvent) throws IOException {
         Event event = getEventIfAuthorized(id);
+        Instant previousStartTime = event.getEventStartTime();
 
         if (editEvent.getEventNotes() != null) {
             event.setEventNotes(editEvent.getEventNotes().strip());
@@ -163,10 +211,9 @@ public class EventService {
             Integer categoryId = event.getEventCategory().getId();
             Integer eventId = event.getId();
 
-            List<Event> overlapEvents = repository.findOverlapEventsByCategoryId(startTime, endTime, categoryId, eventId);
-
-            if (overlapEvents.size() > 0) {
-                throw new EventOverlapException();
+            if (overlapChecker.hasOverlap(startTime, endTime, categoryId, eventId)) {
+                metrics.getUpdateOverlapRejections().increment();
+                throw new EventOverlapException(getOverlapSuggestions(categoryId, event.getEventDuration(), startTime, eventId));
             } else {
                 event.setEventStartTime(startTime);
             }
@@ -174,7 +221,14 @@ public class EventService {
 
         updateFileForEvent(event, editEvent.getFile());
 
-        return mapEventToEventResponse(saveAndRefresh(event));
+        Event savedEvent = saveAndRefresh(event);
+        intervalIndex.put(savedEvent);
+        if (!previousStartTime.equals(savedEvent.getEventStartTime())) {
+            Integer categoryId = savedEvent.getEventCategory().getId();
+            availabilityCache.invalidate(categoryId, previousStartTime);
+            availabilityCache.invalidate(categoryId, savedEvent.getEventStartTime());
+        }
+        return mapEventToEventResponse(savedEvent);
     }
 
     private void updateFileForEvent(Event event, MultipartFile newFile) throws IOException {
@@ -189,118 +243,195 @@ public class EventService {
     }
 
     private void removeFileFromEvent(Event event) {
+        deleteStoredFiles(event);
+        event.getFiles().clear();
+    }
+
+    private void deleteStoredFiles(Event event) {
         List<File> existingFiles = event.getFiles();
         existingFiles.forEach(file -> {
             try {
-                fileService.deleteFile(file.getBucketId(), file.getName());
+                fileService.deleteFile(file);
             } catch (Exception ignored) {
             }
-            System.out.println("Deleted file " + file.getName() + " (" + file.getId() + ") from bucket " + file.getBucketId());
+            log.debug("Deleted file {} ({}) from bucket {}", file.getName(), file.getId(), file.getBucketId());
         });
-
-        event.getFiles().clear();
     }
 
+    /**
+     * Get all events matching the {@code options} that the current user can see, ordered by start time then id
+     *
+     * @param options the options from the request
+     * @return list of events
+     */
     public List<EventResponse> getEventsNew(GetEventsOptions options) {
-        EventTimeType type = options.getType();
-        Instant startAt = options.getStartAt();
-        Collection<Integer> categoryIds = options.getCategoryIds();
-
-        if (EventTimeType.DAY.equals(type)) {
-            if (startAt == null) {
-                throw new IllegalArgumentException("startAt cannot be null for type " + EventTimeType.DAY);
-            }
-            return getEventsByDay(startAt, categoryIds);
+        AuthStatus authStatus = authUtil.getAuthStatus();
+        EventFilter filter = getUserAwareEventFilter(options, authStatus);
+        Timer.Sample sample = Timer.start();
+        try {
+            return repository.findResponses(filter);
+        } finally {
+            stopListTimer(sample, options.getType(), authStatus);
         }
+    }
 
-        Instant now = Instant.now();
-        if (EventTimeType.UPCOMING.equals(type)) {
-            return getUpcomingEvents(now, categoryIds);
-        }
-        if (EventTimeType.PAST.equals(type)) {
-            return getPastEvents(now, categoryIds);
+    /**
+     * Get a page of events matching the {@code filter}, ordered by start time then id
+     *
+     * @param filter     filter of events, usually from {@link #getUserAwareEventFilter(GetEventsOptions)}
+     * @param type       type of the events in the filter, for the metrics only
+     * @param authStatus the user the filter is created for, for the metrics only
+     * @param after      cursor of the last event of the previous page, null for the first page
+     * @param limit      maximum number of events in the page
+     * @return the page, with the cursor of the next page if there are more events
+     */
+    public EventPage getEventsPage(EventFilter filter, @Nullable EventTimeType type, AuthStatus authStatus,
+                                   @Nullable EventCursor after, int limit) {
+        // fetch one more event to know whether there is a next page
+        Timer.Sample sample = Timer.start();
+        List<EventResponse> events;
+        try {
+            events = repository.findPage(filter, after, limit + 1);
+        } finally {
+            stopListTimer(sample, type, authStatus);
         }
-        if (categoryIds != null) {
-            return getEventsByCategory(categoryIds);
+        EventCursor nextCursor = null;
+        if (events.size() > limit) {
+            events = events.subList(0, limit);
+            nextCursor = EventCursor.of(events.get(limit - 1));
         }
 
-        return getAllEvents();
+        return new EventPage(events, nextCursor);
     }
 
-    public List<EventResponse> getEventsByDay(Instant startAt, Collection<Integer> categoryIds) {
-        UserAwareFindEventsParameters parameters = new UserAwareFindEventsParameters(categoryIds);
-        List<Event> events = repository.findByDateRangeOfOneDay(startAt, parameters.categoryIds, parameters.email);
-        return mapEventsToEventResponses(events);
+    private void stopListTimer(Timer.Sample sample, @Nullable EventTimeType type, AuthStatus authStatus) {
+        sample.stop(metrics.getListTimer(EventMetrics.getTypeName(type), EventMetrics.getRoleName(authStatus)));
     }
 
-    public List<EventResponse> getPastEvents(Instant startAt, Collection<Integer> categoryIds) {
-        UserAwareFindEventsParameters parameters = new UserAwareFindEventsParameters(categoryIds);
-        List<Event> events = repository.findPastEvents(startAt, parameters.categoryIds, parameters.email);
-        return mapEventsToEventResponses(events);
+    /**
+     * Create an {@link EventFilter} from the {@code options}, restricted to the events the current user can see
+     *
+     * @param options the options from the request
+     * @return filter of events for the current user
+     * @throws ForbiddenException if the current user is a guest
+     */
+    public EventFilter getUserAwareEventFilter(GetEventsOptions options) {
+        return getUserAwareEventFilter(options, authUtil.getAuthStatus());
     }
 
-    public List<EventResponse> getUpcomingEvents(Instant startAt, Collection<Integer> categoryIds) {
-        UserAwareFindEventsParameters parameters = new UserAwareFindEventsParameters(categoryIds);
-        List<Event> events = repository.findUpcomingAndOngoingEvents(startAt, parameters.categoryIds, parameters.email);
-        return mapEventsToEventResponses(events);
-    }
+    private EventFilter getUserAwareEventFilter(GetEventsOptions options, AuthStatus authStatus) {
+        if (authStatus.isGuest) {
+            throw COMMON_FORBIDDEN_EXCEPTION;
+        }
 
-    public List<EventResponse> getEventsByCategory(Collection<Integer> categoryIds) {
-        List<Event> events;
-        AuthStatus authStatus = authUtil.getAuthStatus();
-        String email = authStatus.getEmail();
+        UserAwareFindEventsParameters parameters = new UserAwareFindEventsParameters(options.getCategoryIds());
+        EventFilter filter = new EventFilter();
+        filter.setCategoryIds(parameters.categoryIds);
+        filter.setEmail(parameters.email);
 
-        if (authStatus.isAdmin) {
-            events = repository.findByEventCategory_IdIn(categoryIds);
-        } else if (authStatus.isLecturer) {
-            Set<Integer> filteredCategoryIds = getFilteredCategoryIdsForLecturer(email, categoryIds);
-            events = repository.findByEventCategory_IdIn(filteredCategoryIds);
-        } else if (authStatus.isStudent) {
-            events = repository.findByEventCategory_IdInAndBookingEmail(categoryIds, email);
-        } else {
-            throw COMMON_FORBIDDEN_EXCEPTION;
+        EventTimeType type = options.getType();
+        Instant now = Instant.now();
+        if (EventTimeType.DAY.equals(type)) {
+            filter.setStartFrom(options.getStartAt());
+            filter.setStartBefore(options.getStartAt().plus(1, ChronoUnit.DAYS));
+        } else if (EventTimeType.UPCOMING.equals(type)) {
+            filter.setEndAfter(now);
+        } else if (EventTimeType.PAST.equals(type)) {
+            filter.setEndAtOrBefore(now);
         }
 
-        return mapEventsToEventResponses(events);
+        return filter;
     }
 
-    public List<EventResponse> getAllEvents() {
-        List<Event> events;
-        AuthStatus authStatus = authUtil.getAuthStatus();
-        String email = authStatus.getEmail();
-
-        if (authStatus.isAdmin) {
-            events = repository.findAll();
-        } else if (authStatus.isLecturer) {
-            Set<Integer> ownCategoryIds = getCategoryIdsForLecturer(email);
-            events = repository.findByEventCategory_IdIn(ownCategoryIds);
-        } else if (authStatus.isStudent) {
-            events = repository.findByBookingEmail(email);
+    private Set<Integer> getFilteredCategoryIdsForLecturer(String email, @Nullable Collection<Integer> untrustedCategoryIds) {
+        int[] ownCategoryIds = ownershipCache.getCategoryIds(email);
+        Set<Integer> categoryIds = new HashSet<>();
+        if (untrustedCategoryIds == null) {
+            for (int categoryId : ownCategoryIds) {
+                categoryIds.add(categoryId);
+            }
         } else {
-            throw COMMON_FORBIDDEN_EXCEPTION;
+            for (Integer categoryId : untrustedCategoryIds) {
+                if (categoryId != null && Arrays.binarySearch(ownCategoryIds, categoryId) >= 0) {
+                    categoryIds.add(categoryId);
+                }
+            }
         }
+        return categoryIds;
+    }
 
-        return mapEventsToEventResponses(events);
+    public List<EventTimeSlotResponse> getAllocatedTimeSlotsInCategoryOnDate(Integer categoryId, Instant startAt, Integer excludeEventId) {
+        return availabilityCache.get(categoryId, startAt).toResponses(categoryId, excludeEventId);
     }
 
-    private Set<Integer> getFilteredCategoryIdsForLecturer(String email, @Nullable Collection<Integer> untrustedCategoryIds) {
-        Set<Integer> ownCategoryIds = getCategoryIdsForLecturer(email);
-        if (untrustedCategoryIds != null) {
-            ownCategoryIds.retainAll(untrustedCategoryIds);
+    /**
+     * Find the free slots of the category nearest to {@code startAt}, within {@link #SLOT_SEARCH_RANGE} before or after it
+     *
+     * @param categoryId     category id of the slots
+     * @param startAt        desired start time
+     * @param count          maximum number of slots
+     * @param excludeEventId event to ignore, usually the event being moved
+     * @return free slots of the category duration, ordered by start time
+     * @throws EntityNotFoundException if the category does not exist
+     */
+    public List<EventTimeSlotResponse> getAvailableTimeSlots(Integer categoryId, Instant startAt, int count, @Nullable Integer excludeEventId) {
+        CategoryResponse category = categoryCatalogue.get().findById(categoryId)
+                .orElseThrow(() -> new EntityNotFoundException("Event category with id " + categoryId + " not found"));
+        return findAvailableTimeSlots(categoryId, category.getEventDuration(), startAt, count, excludeEventId);
+    }
+
+    @Nullable
+    private List<EventTimeSlotResponse> getOverlapSuggestions(Integer categoryId, int duration, Instant startAt, @Nullable Integer excludeEventId) {
+        if (overlapSuggestions <= 0) {
+            return null;
         }
-        return ownCategoryIds;
+        return findAvailableTimeSlots(categoryId, duration, startAt, overlapSuggestions, excludeEventId);
     }
 
-    private Set<Integer> getCategoryIdsForLecturer(String email) {
-        return this.categoryOwnerRepository.findByOwnerEmail(email).stream()
-                .map(c -> c.getEventCategory().getId()).collect(Collectors.toSet());
+    private List<EventTimeSlotResponse> findAvailableTimeSlots(Integer categoryId, int duration, Instant startAt, int count, @Nullable Integer excludeEventId) {
+        Instant earliestStart = Instant.now().truncatedTo(ChronoUnit.MINUTES).plus(1, ChronoUnit.MINUTES);
+        Instant windowStart = startAt.minus(SLOT_SEARCH_RANGE);
+        if (windowStart.isBefore(earliestStart)) {
+            windowStart = earliestStart;
+        }
+        Instant windowEnd = startAt.plus(SLOT_SEARCH_RANGE);
+        if (!windowStart.isBefore(windowEnd)) {
+            return List.of();
+        }
+
+        // two cached days starting at the hour before startAt hold every event that can overlap the window,
+        // hour aligned so nearby requests share the days
+        Instant firstDay = startAt.truncatedTo(ChronoUnit.HOURS).minus(1, ChronoUnit.DAYS);
+        List<AvailabilityCache.DaySlots> days = List.of(
+                availabilityCache.get(categoryId, firstDay),
+                availabilityCache.get(categoryId, firstDay.plus(1, ChronoUnit.DAYS)));
+
+        int size = days.get(0).size() + days.get(1).size();
+        long[] busyStarts = new long[size];
+        long[] busyEnds = new long[size];
+        int length = 0;
+        for (AvailabilityCache.DaySlots day : days) {
+            for (int i = 0; i < day.size(); i++) {
+                if (excludeEventId == null || day.getEventId(i) != excludeEventId) {
+                    busyStarts[length] = day.getStartTime(i).getEpochSecond();
+                    busyEnds[length] = busyStarts[length] + day.getDuration(i) * 60L;
+                    length++;
+                }
+            }
+        }
+
+        long[] slots = FreeSlotFinder.findNearest(Arrays.copyOf(busyStarts, length), Arrays.copyOf(busyEnds, length),
+                startAt.getEpochSecond(), duration * 60L, windowStart.getEpochSecond(), windowEnd.getEpochSecond(), count);
+        List<EventTimeSlotResponse> responses = new ArrayList<>(slots.length);
+        for (long slot : slots) {
+            responses.add(new EventTimeSlotResponse(Instant.ofEpochSecond(slot), duration, categoryId));
+        }
+        return responses;
     }
 
-    public List<EventTimeSlotResponse> getAllocatedTimeSlotsInCategoryOnDate(Integer categoryId, Instant startAt, Integer excludeEventId) {
-        List<Event> events = repository.findByDateRangeOfOneDay(startAt, List.of(categoryId), null, excludeEventId);
-        return events.stream()
-                .map(event -> new EventTimeSlotResponse(event.getEventStartTime(), event.getEventDuration(), categoryId))
-                .collect(Collectors.toList());
+    public CompactTimeSlotsResponse getCompactAllocatedTimeSlotsInCategoryOnDate(Integer categoryId, Instant startAt, Integer excludeEventId) {
+        AvailabilityCache.DaySlots slots = availabilityCache.get(categoryId, startAt);
+        return new CompactTimeSlotsResponse(categoryId, slots.getStartAt(), slots.toCompactSlots(excludeEventId));
     }
 
     public enum EventTimeType {
@@ -319,6 +450,14 @@ public class EventService {
         }
     }
 
+    @Getter
+    @RequiredArgsConstructor
+    public static class EventPage {
+        private final List<EventResponse> items;
+        @Nullable
+        private final EventCursor nextCursor;
+    }
+
     @Getter
     public static class GetEventsOptions {
         @Nullable
@@ -1,25 +1,105 @@
 package int221.oasip.backendus3.services;
 
 import int221.oasip.backendus3.repository.FileRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Uploaded files are stored once per content under {@code <upload.path>/blobs/ab/cd/<sha256>},
+ * every row of the {@code file} table with the same {@code sha256} shares the blob.
+ * An upload is hashed while it is copied to a temporary file, which is then moved to the blob or dropped if it exists.
+ * <p>A blob is deleted when no row references it anymore. The blobs are shared by every backend, so the rows
+ * not committed yet cannot be seen from the others: an upload sets the modification time of its blob instead,
+ * and a blob modified within {@code upload.blob-grace-period} is never deleted. The blobs released within it,
+ * e.g. by a rolled back upload, are deleted by a sweep every {@code upload.blob-sweep-interval}.
+ * Since the modification time of a blob only marks its last upload, it is not served as its Last-Modified.
+ * <p>Rows created before the blob store have no {@code sha256} and are still read from {@code <upload.path>/<bucketId>/<name>}.
+ */
 @Service
+@Slf4j
 public class FileService {
+    private static final String BLOB_DIRECTORY = "blobs";
+    private static final String TEMP_DIRECTORY = "tmp";
+    private static final int LOCK_STRIPES = 64;
+
     private final FileRepository fileRepository;
     @Value("${upload.path}")
     private String uploadPathProp;
+    /**
+     * Longest time between an upload and the commit of its {@code file} row
+     */
+    @Value("${upload.blob-grace-period:1h}")
+    private Duration blobGracePeriod;
+    @Value("${upload.blob-sweep-interval:1h}")
+    private Duration blobSweepInterval;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private ScheduledExecutorService sweeper;
+    /**
+     * The blobs modified at or before it were checked by the previous sweep, null until the first sweep
+     */
+    @Nullable
+    private Instant sweptUntil;
+    private final Timer uploadTimer;
+    private final DistributionSummary uploadBytes;
+    private final Timer downloadTimer;
+    private final DistributionSummary downloadBytes;
 
-    public FileService(FileRepository fileRepository) {
+    public FileService(FileRepository fileRepository, MeterRegistry meterRegistry) {
         this.fileRepository = fileRepository;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+        uploadTimer = transferTimer(meterRegistry, "upload");
+        uploadBytes = transferBytes(meterRegistry, "upload");
+        downloadTimer = transferTimer(meterRegistry, "download");
+        downloadBytes = transferBytes(meterRegistry, "download");
+    }
+
+    private static Timer transferTimer(MeterRegistry meterRegistry, String direction) {
+        return Timer.builder("oasip.files.transfer")
+                .description("Time to store an upload or to write a download")
+                .tag("direction", direction)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static DistributionSummary transferBytes(MeterRegistry meterRegistry, String direction) {
+        return DistributionSummary.builder("oasip.files.bytes")
+                .description("Size of the uploaded files and of the downloaded ranges")
+                .baseUnit("bytes")
+                .tag("direction", direction)
+                .register(meterRegistry);
     }
 
     private static String getFileNameOrThrow(MultipartFile newFile) throws IOException {
@@ -30,27 +110,282 @@ public class FileService {
         return filename;
     }
 
-    public void uploadFile(String bucketId, MultipartFile file) throws IOException {
-        Path uploadPath = Paths.get(uploadPathProp, bucketId).normalize();
-        Files.createDirectories(uploadPath);
-
+    /**
+     * Store the content of the upload, only written to the disk if no other file has the same content.
+     * The blob is kept at least until the current transaction completes.
+     *
+     * @return unsaved file entity for the upload, its event is not set
+     */
+    public int221.oasip.backendus3.entities.File uploadFile(String bucketId, MultipartFile file) throws IOException {
         String filename = getFileNameOrThrow(file);
-        Path destinationPath = uploadPath.resolve(filename);
-        file.transferTo(destinationPath);
-        System.out.println("Saved to " + destinationPath.toAbsolutePath());
+        long startTime = System.nanoTime();
+        Path tempPath = getTempPath();
+        String sha256;
+        try {
+            sha256 = writeTemp(file, tempPath);
+            synchronized (getLock(sha256)) {
+                Path blobPath = getBlobPath(sha256);
+                try {
+                    // keeps the blob for the grace period, until the row is committed
+                    Files.setLastModifiedTime(blobPath, FileTime.from(Instant.now()));
+                } catch (NoSuchFileException e) {
+                    Files.createDirectories(blobPath.getParent());
+                    Files.move(tempPath, blobPath, StandardCopyOption.ATOMIC_MOVE);
+                    log.debug("Saved to {}", blobPath.toAbsolutePath());
+                }
+            }
+        } finally {
+            // still there if the blob already existed or the upload failed
+            Files.deleteIfExists(tempPath);
+        }
+        uploadTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        uploadBytes.record(file.getSize());
+
+        int221.oasip.backendus3.entities.File fileEntity = new int221.oasip.backendus3.entities.File();
+        fileEntity.setBucketId(bucketId);
+        fileEntity.setName(filename);
+        fileEntity.setType(file.getContentType() == null ? "application/octet-stream" : file.getContentType());
+        fileEntity.setSha256(sha256);
+        fileEntity.setSize(file.getSize());
+        return fileEntity;
     }
 
-    public Optional<File> getFile(String bucketId, String filename) {
-        Path uploadPath = Paths.get(uploadPathProp, bucketId).normalize();
-        Path destinationPath = uploadPath.resolve(filename);
-        return Optional.of(destinationPath.toFile());
+    /**
+     * Record a download written by the caller
+     *
+     * @param bytes   number of bytes written
+     * @param elapsed time spent writing them, null if they are written by the connector after the request
+     */
+    public void recordDownload(long bytes, @Nullable Duration elapsed) {
+        if (elapsed != null) {
+            downloadTimer.record(elapsed);
+        }
+        downloadBytes.record(bytes);
+    }
+
+    /**
+     * Copy the upload to a temporary file, hashing it on the way so it is read only once
+     *
+     * @return the SHA-256 of the content as hex
+     */
+    private static String writeTemp(MultipartFile file, Path tempPath) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            Files.copy(in, tempPath);
+        }
+
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @return a new path in the temporary directory, on the same file system as the blobs so they can be moved atomically
+     */
+    private Path getTempPath() throws IOException {
+        Path tempDirectory = Paths.get(uploadPathProp, BLOB_DIRECTORY, TEMP_DIRECTORY);
+        Files.createDirectories(tempDirectory);
+        return tempDirectory.resolve(UUID.randomUUID().toString());
+    }
+
+    private Path getBlobPath(String sha256) {
+        return Paths.get(uploadPathProp, BLOB_DIRECTORY, sha256.substring(0, 2), sha256.substring(2, 4), sha256);
+    }
+
+    private Object getLock(String sha256) {
+        return locks[Math.floorMod(sha256.hashCode(), LOCK_STRIPES)];
+    }
+
+    /**
+     * Find an uploaded file with its metadata, for downloading
+     *
+     * @return empty if the file is not in the {@code file} table or not on the disk
+     */
+    public Optional<StoredFile> getStoredFile(String bucketId, String filename) throws IOException {
+        Optional<int221.oasip.backendus3.entities.File> fileEntity = fileRepository.findFirstByBucketIdAndName(bucketId, filename);
+        if (fileEntity.isEmpty()) {
+            return Optional.empty();
+        }
+
+        String sha256 = fileEntity.get().getSha256();
+        Path path = sha256 == null
+                ? Paths.get(uploadPathProp, bucketId).normalize().resolve(filename)
+                : getBlobPath(sha256);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+
+        long lastModified;
+        String eTag;
+        if (sha256 == null) {
+            lastModified = attributes.lastModifiedTime().toMillis();
+            eTag = "\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(lastModified) + "\"";
+        } else {
+            lastModified = -1;
+            eTag = "\"" + sha256 + "\"";
+        }
+        return Optional.of(new StoredFile(path, filename, fileEntity.get().getType(), attributes.size(), lastModified, eTag));
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class StoredFile {
+        private final Path path;
+        private final String name;
+        private final String contentType;
+        private final long size;
+        /**
+         * Modification time in milliseconds for legacy files, -1 for blobs, which are identified by their entity tag only
+         */
+        private final long lastModified;
+        /**
+         * Strong entity tag, the content hash for blobs. Legacy files are never modified in place
+         * so their size and modification time identify the content.
+         */
+        private final String eTag;
     }
 
     public void create(int221.oasip.backendus3.entities.File file) {
         fileRepository.saveAndFlush(file);
     }
 
-    public void deleteFile(String bucketId, String filename) {
+    /**
+     * Delete the stored content of a file whose row is being deleted.
+     * A blob is only deleted after the transaction commits, only if no other row references it
+     * and once the grace period of its last upload has passed.
+     */
+    public void deleteFile(int221.oasip.backendus3.entities.File file) {
+        if (file.getSha256() == null) {
+            deleteFile(file.getBucketId(), file.getName());
+        } else {
+            String sha256 = file.getSha256();
+            afterTransaction(() -> releaseBlob(sha256));
+        }
+    }
+
+    private void releaseBlob(String sha256) {
+        Path blobPath = getBlobPath(sha256);
+        synchronized (getLock(sha256)) {
+            try {
+                if (isInGracePeriod(blobPath) || fileRepository.countBySha256(sha256) > 0) {
+                    return;
+                }
+
+                // an upload of another backend either set the modification time before the move, so the blob
+                // is moved back, or finds the blob missing and writes it again
+                Path deletingPath = getTempPath();
+                Files.move(blobPath, deletingPath, StandardCopyOption.ATOMIC_MOVE);
+                if (isInGracePeriod(deletingPath)) {
+                    try {
+                        Files.move(deletingPath, blobPath, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (FileAlreadyExistsException e) {
+                        Files.delete(deletingPath);
+                    }
+                } else {
+                    Files.delete(deletingPath);
+                }
+            } catch (NoSuchFileException e) {
+                // already deleted
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to delete blob " + sha256, e);
+            }
+        }
+    }
+
+    private boolean isInGracePeriod(Path path) throws IOException {
+        return Files.getLastModifiedTime(path).toInstant().isAfter(Instant.now().minus(blobGracePeriod));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startSweeper() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "blob-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = blobSweepInterval.toMillis();
+        sweeper.scheduleWithFixedDelay(this::sweepBlobs, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopSweeper() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * Release the blobs whose grace period ended since the previous sweep, every blob on the first sweep,
+     * and delete the temporary files of the uploads that did not complete
+     */
+    void sweepBlobs() {
+        Path blobDirectory = Paths.get(uploadPathProp, BLOB_DIRECTORY);
+        Path tempDirectory = blobDirectory.resolve(TEMP_DIRECTORY);
+        Instant from = sweptUntil;
+        Instant until = Instant.now().minus(blobGracePeriod);
+        if (!Files.isDirectory(blobDirectory)) {
+            sweptUntil = until;
+            return;
+        }
+
+        try {
+            Files.walkFileTree(blobDirectory, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) throws IOException {
+                    Instant modified = attributes.lastModifiedTime().toInstant();
+                    if (modified.isAfter(until)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    if (path.startsWith(tempDirectory)) {
+                        Files.deleteIfExists(path);
+                    } else if (from == null || modified.isAfter(from)) {
+                        releaseBlob(path.getFileName().toString());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path path, IOException e) {
+                    // deleted while walking
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            sweptUntil = until;
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to sweep the blobs", e);
+        }
+    }
+
+    /**
+     * Run the action when the current transaction completes, either committed or rolled back, or now if there is none
+     */
+    private static void afterTransaction(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.run();
+            }
+        });
+    }
+
+    private void deleteFile(String bucketId, String filename) {
         Path uploadPath = Paths.get(uploadPathProp, bucketId).normalize();
         Path destinationPath = uploadPath.resolve(filename);
         File file = destinationPath.toFile();
@@ -1,63 +1,134 @@
 package int221.oasip.backendus3.services;
 
+import int221.oasip.backendus3.configs.MailProps;
 import int221.oasip.backendus3.entities.Event;
-import org.springframework.beans.factory.annotation.Value;
+import int221.oasip.backendus3.services.mail.MailTemplate;
+import int221.oasip.backendus3.services.mail.OutgoingMail;
+import int221.oasip.backendus3.services.mail.PartialSendException;
+import int221.oasip.backendus3.services.mail.SmtpTransportPool;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import javax.mail.*;
+import javax.mail.internet.AddressException;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.Date;
-import java.util.Properties;
+import java.util.*;
 
 @Service
 public class MailService {
-    @Value("${mail.disable}")
-    private boolean mailDisable;
-    @Value("${mail.username}")
-    private String mailUsername;
-    @Value("${mail.password}")
-    private String mailPassword;
-
-    public void sendmail(Event event) throws MessagingException {
-        if (mailDisable) {
-            return;
-        }
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("E MMM dd, yyyy HH:mm").withZone(ZoneId.of("Asia/Bangkok"));
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm ").withZone(ZoneId.of("Asia/Bangkok"));
+    private static final MailTemplate BOOKING_CONFIRMATION_TEMPLATE = MailTemplate.fromClasspath("templates/booking-confirmation.html");
+
+    private final MailProps mailProps;
+    private final Session session;
+    private final InternetAddress from;
+    private final SmtpTransportPool transportPool;
+    private final Timer sentTimer;
+    private final Timer failedTimer;
+
+    public MailService(MailProps mailProps, MeterRegistry meterRegistry) throws AddressException {
+        this.mailProps = mailProps;
+        this.sentTimer = sendTimer(meterRegistry, "sent");
+        this.failedTimer = sendTimer(meterRegistry, "failed");
+
         Properties props = new Properties();
-        props.put("mail.smtp.auth", "true");
-        props.put("mail.smtp.starttls.enable", "true");
-        props.put("mail.smtp.host", "smtp.gmail.com");
-        props.put("mail.smtp.port", "587");
+        props.put("mail.smtp.auth", String.valueOf(mailProps.isAuth()));
+        props.put("mail.smtp.starttls.enable", String.valueOf(mailProps.isStarttls()));
+        props.put("mail.smtp.host", mailProps.getHost());
+        props.put("mail.smtp.port", String.valueOf(mailProps.getPort()));
+        props.put("mail.smtp.connectiontimeout", "10000");
+        props.put("mail.smtp.timeout", "10000");
 
-        Session session = Session.getInstance(props, new javax.mail.Authenticator() {
+        this.session = Session.getInstance(props, new javax.mail.Authenticator() {
             protected javax.mail.PasswordAuthentication getPasswordAuthentication() {
-                return new PasswordAuthentication(mailUsername, mailPassword);
+                return new PasswordAuthentication(mailProps.getUsername(), mailProps.getPassword());
             }
         });
-        DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("E MMM dd, yyyy HH:mm").withZone(ZoneId.of("Asia/Bangkok"));
-        DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm ").withZone(ZoneId.of("Asia/Bangkok"));
+        this.from = new InternetAddress(mailProps.getFrom(), false);
+
+        MailProps.Pool pool = mailProps.getPool();
+        this.transportPool = new SmtpTransportPool(session, pool.getSize(), pool.getMaxMessagesPerConnection(), pool.getBorrowTimeout());
+    }
+
+    private static Timer sendTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("oasip.mail.send")
+                .description("Time to send one mail through the SMTP connection")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void close() {
+        transportPool.close();
+    }
+
+    public boolean isDisabled() {
+        return mailProps.isDisable();
+    }
+
+    public OutgoingMail createBookingConfirmation(Event event, String eventCategoryName) {
         Instant endTime = event.getEventStartTime().plusSeconds(event.getEventDuration() * 60);
+        String when = DATE_TIME_FORMATTER.format(event.getEventStartTime()) + " - " + TIME_FORMATTER.format(endTime);
 
-        javax.mail.Message msg = new MimeMessage(session);
-        msg.setFrom(new InternetAddress("oasip.us3.noreply@gmail.com", false));
-
-        msg.setRecipients(Message.RecipientType.TO, InternetAddress.parse(event.getBookingEmail()));
-        msg.setSubject("Your booking is complete.");
-        String eventCategory = event.getEventCategory().getEventCategoryName();
-        String eventNotes = event.getEventNotes();
-        msg.setContent("Subject: [OASIP] " + eventCategory + " @ " + dateTimeFormatter.format(event.getEventStartTime()) + " - " + timeFormatter.format(endTime) + " (ICT)" +
-                        "<br>Reply-to: noreply@intproj21.sit.kmutt.ac.th" +
-                        "<br>Booking Name: " + event.getBookingName() +
-                        "<br>Event Category: " + eventCategory +
-                        "<br>When: " + dateTimeFormatter.format(event.getEventStartTime()) + " - " + timeFormatter.format(endTime) + " (ICT)" +
-                        "<br>Event Notes: " + (eventNotes == null ? "" : eventNotes)
-
-                , "text/html; charset=utf-8");
-        msg.setSentDate(new Date());
+        Map<String, String> values = new HashMap<>();
+        values.put("eventCategoryName", eventCategoryName);
+        values.put("when", when);
+        values.put("bookingName", event.getBookingName());
+        values.put("eventNotes", event.getEventNotes());
+
+        return new OutgoingMail(event.getBookingEmail(), "Your booking is complete.", BOOKING_CONFIRMATION_TEMPLATE.render(values));
+    }
 
-        Transport.send(msg);
+    /**
+     * Send the mails through one pooled SMTP connection
+     *
+     * @param mails mails to be sent
+     * @return the failure of each mail in the same order as {@code mails}, null for the mails that are sent
+     * @throws PartialSendException if the connection is lost during the batch, with the results of the mails before it
+     * @throws MessagingException   if no connection can be made, none of the mails is sent
+     */
+    public List<MessagingException> send(List<OutgoingMail> mails) throws MessagingException {
+        List<MessagingException> failures = new ArrayList<>(mails.size());
+        SmtpTransportPool.PooledTransport transport = transportPool.borrow();
+        boolean reusable = false;
+        try {
+            for (OutgoingMail mail : mails) {
+                Timer.Sample sample = Timer.start();
+                try {
+                    transport.send(createMessage(mail));
+                    sample.stop(sentTimer);
+                    failures.add(null);
+                } catch (MessagingException e) {
+                    sample.stop(failedTimer);
+                    if (!transport.isConnected()) {
+                        throw new PartialSendException(failures, e);
+                    }
+                    failures.add(e);
+                }
+            }
+            reusable = true;
+        } finally {
+            transportPool.release(transport, reusable);
+        }
+        return failures;
+    }
+
+    private Message createMessage(OutgoingMail mail) throws MessagingException {
+        Message msg = new MimeMessage(session);
+        msg.setFrom(from);
+        msg.setRecipients(Message.RecipientType.TO, InternetAddress.parse(mail.getRecipient()));
+        msg.setSubject(mail.getSubject());
+        msg.setContent(mail.getHtmlBody(), "text/html; charset=utf-8");
+        msg.setSentDate(new Date());
+        msg.saveChanges();
+        return msg;
     }
 }
@@ -3,41 +3,43 @@ package int221.oasip.backendus3.services;
 import int221.oasip.backendus3.dtos.CreateUserRequest;
 import int221.oasip.backendus3.dtos.EditUserRequest;
 import int221.oasip.backendus3.dtos.UserResponse;
-import int221.oasip.backendus3.entities.EventCategory;
-import int221.oasip.backendus3.entities.EventCategoryOwner;
 import int221.oasip.backendus3.entities.Role;
 import int221.oasip.backendus3.entities.User;
 import int221.oasip.backendus3.exceptions.EntityNotFoundException;
 import int221.oasip.backendus3.exceptions.ForbiddenException;
 import int221.oasip.backendus3.exceptions.ValidationErrors;
+import int221.oasip.backendus3.mappers.UserMapper;
 import int221.oasip.backendus3.repository.EventCategoryOwnerRepository;
-import int221.oasip.backendus3.repository.EventCategoryRepository;
+import int221.oasip.backendus3.repository.OwnedCategory;
 import int221.oasip.backendus3.repository.UserRepository;
-import int221.oasip.backendus3.utils.ModelMapperUtils;
+import int221.oasip.backendus3.services.cache.CategoryOwnershipCache;
 import lombok.AllArgsConstructor;
-import org.modelmapper.ModelMapper;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Sort;
-import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.Nullable;
 import java.util.List;
 import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Service
 @AllArgsConstructor
 public class UserService {
     private UserRepository repository;
-    private EventCategoryRepository categoryRepository;
     private EventCategoryOwnerRepository categoryOwnerRepository;
-    private ModelMapper modelMapper;
-    private ModelMapperUtils modelMapperUtils;
-    private Argon2PasswordEncoder argon2PasswordEncoder;
+    private UserMapper userMapper;
+    private CategoryOwnershipCache ownershipCache;
+    private PasswordEncoder passwordEncoder;
 
     public List<UserResponse> getAll() {
         List<User> users = repository.findAll(Sort.by("name"));
-        return modelMapperUtils.mapList(users, UserResponse.class);
+        return userMapper.toResponses(users);
     }
 
     public UserResponse create(CreateUserRequest request) {
@@ -49,38 +51,40 @@ public class UserService {
 
         ValidationErrors errors = new ValidationErrors();
 
-        if (repository.findByName(strippedName).isPresent()) {
-            errors.addFieldError("name", "Name is not unique");
-        }
-        if (repository.findByEmail(strippedEmail).isPresent()) {
-            errors.addFieldError("email", "Email is not unique");
-        }
         try {
             parsedRole = Role.fromString(strippedRoleRaw);
         } catch (IllegalArgumentException e) {
             errors.addFieldError("role", "Role must be either student, admin, or lecturer");
         }
         if (errors.hasErrors()) {
+            addDuplicateErrors(errors, strippedName, strippedEmail);
             throw errors;
         }
 
+        // a duplicate name or email is only found by the insert, so its password is hashed for nothing,
+        // the hashes are bounded by the encoder and it is an admin only endpoint
         User user = new User();
         user.setName(strippedName);
         user.setEmail(strippedEmail);
-        user.setPassword(argon2PasswordEncoder.encode(password));
+        user.setPassword(passwordEncoder.encode(password));
         user.setRole(parsedRole);
 
-        return modelMapper.map(repository.saveAndFlush(user), UserResponse.class);
+        try {
+            return userMapper.toResponse(repository.saveAndFlush(user));
+        } catch (DataIntegrityViolationException e) {
+            throw toValidationErrors(e, errors, strippedName, strippedEmail);
+        }
     }
 
+    @Transactional
     public void delete(Integer id) {
         User user = repository.findById(id).orElseThrow(() -> new EntityNotFoundException("User not found"));
 
         // if the user is lecturer, check if there are any lecturers left to take over the categories (owners of each category must be > 0)
         // if there are none, throw an error
         if (user.getRole().equals(Role.LECTURER)) {
-            List<EventCategory> ownCategories = this.categoryRepository.findByOwners_OwnerEmail(user.getEmail());
-            List<EventCategory> ownCategoriesWithOneOwner = ownCategories.stream().filter(category -> category.getOwners().size() == 1).collect(Collectors.toList());
+            List<OwnedCategory> ownCategories = categoryOwnerRepository.findOwnedCategoriesByOwnerEmail(user.getEmail());
+            List<OwnedCategory> ownCategoriesWithOneOwner = ownCategories.stream().filter(category -> category.getOwnerCount() == 1).collect(Collectors.toList());
             if (ownCategoriesWithOneOwner.size() > 0) {
                 String message = user.getName() + " is the owner of " +
                         getCategoriesString(ownCategories) +
@@ -91,17 +95,32 @@ public class UserService {
                 throw new ForbiddenException(message);
             }
 
-            Stream<EventCategoryOwner> lecturerCategoryOwnerships = ownCategories.stream()
-                    .flatMap(category ->
-                            category.getOwners().stream().filter(owner -> owner.getOwnerEmail().equals(user.getEmail())));
-            lecturerCategoryOwnerships.forEach(owner -> this.categoryOwnerRepository.delete(owner));
+            if (!ownCategories.isEmpty()) {
+                categoryOwnerRepository.deleteByOwnerEmail(user.getEmail());
+                invalidateOwnershipAfterTransaction(user.getEmail());
+            }
         }
 
-        repository.deleteById(id);
+        repository.delete(user);
     }
 
-    private StringBuilder getCategoriesString(List<EventCategory> categories) {
-        return getListString(categories, EventCategory::getEventCategoryName);
+    private StringBuilder getCategoriesString(List<OwnedCategory> categories) {
+        return getListString(categories, OwnedCategory::getName);
+    }
+
+    /**
+     * Invalidate now and again once the transaction completes, so a concurrent request cannot cache the ownerships
+     * read before the commit. Used for the writes that skip {@link int221.oasip.backendus3.services.cache.CategoryOwnershipListener},
+     * the bulk delete of the ownerships and the change of an owner email.
+     */
+    private void invalidateOwnershipAfterTransaction(String email) {
+        ownershipCache.invalidate(email);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                ownershipCache.invalidate(email);
+            }
+        });
     }
 
     private <T, R> StringBuilder getListString(List<T> list, Function<T, R> mapper) {
@@ -115,30 +134,23 @@ public class UserService {
         return sb;
     }
 
+    @Transactional
     public UserResponse update(Integer id, EditUserRequest request) {
         User user = repository.findById(id).orElseThrow(() -> new EntityNotFoundException("User with id " + id + " not found"));
+        String oldEmail = user.getEmail();
 
         ValidationErrors errors = new ValidationErrors();
-        if (request.getName() != null) {
-            String strippedName = request.getName().strip();
-            if (!user.getName().equals(strippedName)) {
-                if (!repository.existsByName(strippedName)) {
-                    user.setName(strippedName);
-                } else {
-                    errors.addFieldError("name", "Name is not unique");
-                }
-            }
+        // only the changed name and email can be duplicates, the unchanged ones are the user's own
+        String changedName = null;
+        if (request.getName() != null && !user.getName().equals(request.getName().strip())) {
+            changedName = request.getName().strip();
+            user.setName(changedName);
         }
 
-        if (request.getEmail() != null) {
-            String strippedEmail = request.getEmail().strip();
-            if (!user.getEmail().equals(strippedEmail)) {
-                if (!repository.existsByEmail(strippedEmail)) {
-                    user.setEmail(strippedEmail);
-                } else {
-                    errors.addFieldError("email", "Email is not unique");
-                }
-            }
+        String changedEmail = null;
+        if (request.getEmail() != null && !user.getEmail().equals(request.getEmail().strip())) {
+            changedEmail = request.getEmail().strip();
+            user.setEmail(changedEmail);
         }
 
         if (request.getRole() != null) {
@@ -152,14 +164,66 @@ public class UserService {
         }
 
         if (errors.hasErrors()) {
+            addDuplicateErrors(errors, changedName, changedEmail);
             throw errors;
         }
 
-        return modelMapper.map(repository.saveAndFlush(user), UserResponse.class);
+        User saved;
+        try {
+            saved = repository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            throw toValidationErrors(e, errors, changedName, changedEmail);
+        }
+
+        if (!oldEmail.equals(saved.getEmail())) {
+            invalidateOwnershipAfterTransaction(oldEmail);
+            invalidateOwnershipAfterTransaction(saved.getEmail());
+        }
+        return userMapper.toResponse(saved);
+    }
+
+    /**
+     * Translate a violated unique constraint of the user table to the errors of every duplicate field,
+     * the write only reports the first violated constraint. Rethrow any other violation.
+     *
+     * @param name  the name written, null if it is not checked
+     * @param email the email written, null if it is not checked
+     */
+    private ValidationErrors toValidationErrors(DataIntegrityViolationException exception, ValidationErrors errors,
+                                                @Nullable String name, @Nullable String email) {
+        String constraintName = null;
+        if (exception.getCause() instanceof ConstraintViolationException) {
+            constraintName = ((ConstraintViolationException) exception.getCause()).getConstraintName();
+        }
+        // MySQL 8 reports the key qualified by its table
+        constraintName = constraintName == null ? "" : constraintName.substring(constraintName.lastIndexOf('.') + 1);
+        if (!constraintName.equalsIgnoreCase(User.NAME_UNIQUE) && !constraintName.equalsIgnoreCase(User.EMAIL_UNIQUE)) {
+            throw exception;
+        }
+
+        addDuplicateErrors(errors, name, email);
+        if (!errors.hasErrors()) {
+            // the other user was deleted since the write
+            addDuplicateError(errors, constraintName.equalsIgnoreCase(User.NAME_UNIQUE) ? "name" : "email");
+        }
+        return errors;
+    }
+
+    private void addDuplicateErrors(ValidationErrors errors, @Nullable String name, @Nullable String email) {
+        if (name != null && repository.existsByName(name)) {
+            addDuplicateError(errors, "name");
+        }
+        if (email != null && repository.existsByEmail(email)) {
+            addDuplicateError(errors, "email");
+        }
+    }
+
+    private static void addDuplicateError(ValidationErrors errors, String field) {
+        errors.addFieldError(field, field.equals("name") ? "Name is not unique" : "Email is not unique");
     }
 
     public UserResponse getById(Integer id) {
         User user = repository.findById(id).orElseThrow(() -> new EntityNotFoundException("User with id " + id + " not found"));
-        return modelMapper.map(user, UserResponse.class);
+        return userMapper.toResponse(user);
     }
 }
@@ -2,33 +2,64 @@ package int221.oasip.backendus3.services.auth;
 
 import lombok.Getter;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 
+import java.util.Map;
+
+/**
+ * Roles and email of the current user, resolved once per request by {@link AuthUtil}
+ */
 @Getter
 public class AuthStatus {
+    public static final int ADMIN = 1;
+    public static final int LECTURER = 1 << 1;
+    public static final int STUDENT = 1 << 2;
+    private static final Map<String, Integer> ROLE_BY_AUTHORITY = Map.of(
+            "ROLE_ADMIN", ADMIN,
+            "APPROLE_Admin", ADMIN,
+            "ROLE_LECTURER", LECTURER,
+            "APPROLE_Lecturer", LECTURER,
+            "ROLE_STUDENT", STUDENT,
+            "APPROLE_Student", STUDENT
+    );
+
     public final boolean isAdmin;
     public final boolean isGuest;
     public final boolean isLecturer;
     public final boolean isStudent;
     public final String email;
     public final Authentication authentication;
+    /**
+     * Bitmask of {@link #ADMIN}, {@link #LECTURER} and {@link #STUDENT}
+     */
+    private final int roles;
 
     public AuthStatus(Authentication authentication, String email) {
-        this.isAdmin = hasAnyAuthority(authentication, "ROLE_ADMIN", "APPROLE_Admin");
-        this.isLecturer = hasAnyAuthority(authentication, "ROLE_LECTURER", "APPROLE_Lecturer");
-        this.isStudent = hasAnyAuthority(authentication, "ROLE_STUDENT", "APPROLE_Student");
-        this.isGuest = !this.isAdmin && !this.isLecturer && !this.isStudent;
+        this.roles = resolveRoles(authentication);
+        this.isAdmin = hasAnyRole(ADMIN);
+        this.isLecturer = hasAnyRole(LECTURER);
+        this.isStudent = hasAnyRole(STUDENT);
+        this.isGuest = roles == 0;
         this.email = email;
         this.authentication = authentication;
     }
 
-    private boolean hasAnyAuthority(Authentication authentication, String... authorities) {
-        return authentication != null && authentication.getAuthorities().stream().anyMatch(a -> {
-            for (String authority : authorities) {
-                if (a.getAuthority().equals(authority)) {
-                    return true;
-                }
+    public boolean hasAnyRole(int roleMask) {
+        return (roles & roleMask) != 0;
+    }
+
+    private static int resolveRoles(Authentication authentication) {
+        if (authentication == null) {
+            return 0;
+        }
+
+        int roles = 0;
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            Integer role = ROLE_BY_AUTHORITY.get(authority.getAuthority());
+            if (role != null) {
+                roles |= role;
             }
-            return false;
-        });
+        }
+        return roles;
     }
 }
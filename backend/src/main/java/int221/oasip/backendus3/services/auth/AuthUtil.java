@@ -5,24 +5,46 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 @Service
 @RequiredArgsConstructor
 public class AuthUtil {
+    private static final String AUTH_STATUS_ATTRIBUTE = AuthStatus.class.getName();
+
     private final AadJwtUtil aadJwtUtil;
 
+    /**
+     * Get the status of the current user. It is resolved once per request and kept in a request attribute,
+     * until the authentication of the request changes.
+     */
     public AuthStatus getAuthStatus() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null) {
             throw new IllegalStateException("Authentication is null");
         }
 
-        String email = null;
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            Object cached = requestAttributes.getAttribute(AUTH_STATUS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (cached instanceof AuthStatus && ((AuthStatus) cached).authentication == authentication) {
+                return (AuthStatus) cached;
+            }
+        }
+
+        AuthStatus authStatus = new AuthStatus(authentication, getEmail(authentication));
+        if (requestAttributes != null) {
+            requestAttributes.setAttribute(AUTH_STATUS_ATTRIBUTE, authStatus, RequestAttributes.SCOPE_REQUEST);
+        }
+        return authStatus;
+    }
+
+    private String getEmail(Authentication authentication) {
         if (authentication.getPrincipal() instanceof Jwt) {
             Jwt jwt = (Jwt) authentication.getPrincipal();
-            email = aadJwtUtil.isAadToken(jwt) ? aadJwtUtil.getEmail(jwt) : jwt.getClaimAsString("email");
+            return aadJwtUtil.isAadToken(jwt) ? aadJwtUtil.getEmail(jwt) : jwt.getClaimAsString("email");
         }
-
-        return new AuthStatus(authentication, email);
+        return null;
     }
 }
@@ -0,0 +1,127 @@
+package int221.oasip.backendus3.services.booking;
+
+import int221.oasip.backendus3.configs.BookingAdmissionProps;
+import int221.oasip.backendus3.exceptions.ServiceBusyException;
+import int221.oasip.backendus3.repository.EventCategoryRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serialize the bookings of a category, so the overlap check and the insert of a booking cannot interleave
+ * with another booking of the same category. Bookings of different categories do not wait for each other.
+ * <p>A booking first queues on a fair lock of its category in this backend, so waiting requests do not hold
+ * a database connection. It then runs in a new transaction that starts by locking the category row,
+ * which serializes it with the bookings of the other backends, and both locks are released once it commits.
+ * <p>A booking that waits longer than {@link BookingAdmissionProps#getTimeout()} is rejected with {@link ServiceBusyException}.
+ */
+@Component
+public class BookingAdmission {
+    /**
+     * Category ids are small and sequential, so two categories only share a lock once there are more categories than stripes
+     */
+    private static final int STRIPES = 256;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final BookingAdmissionProps props;
+    private final PlatformTransactionManager transactionManager;
+    private final EventCategoryRepository categoryRepository;
+
+    public BookingAdmission(BookingAdmissionProps props, PlatformTransactionManager transactionManager, EventCategoryRepository categoryRepository) {
+        this.props = props;
+        this.transactionManager = transactionManager;
+        this.categoryRepository = categoryRepository;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock(true);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Booking<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * Run the booking in a new transaction, after the bookings of the category admitted before it
+     *
+     * @param categoryId category of the booking
+     * @param booking    checks for overlaps and writes the event
+     * @return the result of the booking
+     * @throws ServiceBusyException if the booking waits too long
+     */
+    public <T, E extends Exception> T admit(Integer categoryId, Booking<T, E> booking) throws E {
+        return admit(List.of(categoryId), booking);
+    }
+
+    /**
+     * Same as {@link #admit(Integer, Booking)} for a booking of several categories.
+     * The locks are taken in the order of the category ids, so two bookings of the same categories cannot deadlock.
+     */
+    public <T, E extends Exception> T admit(Collection<Integer> categoryIds, Booking<T, E> booking) throws E {
+        SortedSet<Integer> sortedIds = new TreeSet<>(categoryIds);
+        List<ReentrantLock> locks = lockLocally(sortedIds);
+        try {
+            return runInTransaction(sortedIds, booking);
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    private List<ReentrantLock> lockLocally(SortedSet<Integer> categoryIds) {
+        // categories sharing a stripe take it once, in the order of the stripes
+        SortedSet<Integer> stripeIndexes = new TreeSet<>();
+        for (Integer categoryId : categoryIds) {
+            stripeIndexes.add(Math.floorMod(categoryId, STRIPES));
+        }
+
+        List<ReentrantLock> locks = new ArrayList<>(stripeIndexes.size());
+        long deadline = System.nanoTime() + props.getTimeout().toNanos();
+        try {
+            for (int index : stripeIndexes) {
+                ReentrantLock lock = stripes[index];
+                if (!lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    throw new ServiceBusyException("Too many bookings in this category, please try again", props.getRetryAfter());
+                }
+                locks.add(lock);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            unlock(locks);
+            throw new ServiceBusyException("The booking was interrupted, please try again", props.getRetryAfter());
+        } catch (RuntimeException e) {
+            unlock(locks);
+            throw e;
+        }
+        return locks;
+    }
+
+    private static void unlock(List<ReentrantLock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    private <T, E extends Exception> T runInTransaction(SortedSet<Integer> categoryIds, Booking<T, E> booking) throws E {
+        TransactionStatus status = transactionManager.getTransaction(
+                new DefaultTransactionDefinition(DefaultTransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        T result;
+        try {
+            if (props.isDistributed()) {
+                for (Integer categoryId : categoryIds) {
+                    categoryRepository.lockById(categoryId);
+                }
+            }
+            result = booking.run();
+        } catch (Throwable e) {
+            transactionManager.rollback(status);
+            throw e;
+        }
+        transactionManager.commit(status);
+        return result;
+    }
+}
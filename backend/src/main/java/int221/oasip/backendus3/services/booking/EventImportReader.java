@@ -0,0 +1,254 @@
+package int221.oasip.backendus3.services.booking;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import int221.oasip.backendus3.dtos.CreateEventRequest;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Read the rows of an event import, as CSV with a header row or as one JSON object per line (NDJSON).
+ * <p>A row that cannot be read is returned with its errors, so the other rows can still be imported.
+ * A file that cannot be read at all, e.g. with an unknown CSV column, is rejected with {@link IllegalArgumentException}.
+ */
+@Component
+@RequiredArgsConstructor
+public class EventImportReader {
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    static final String CATEGORY_ID = "eventCategoryId";
+    static final String BOOKING_NAME = "bookingName";
+    static final String BOOKING_EMAIL = "bookingEmail";
+    static final String START_TIME = "eventStartTime";
+    static final String NOTES = "eventNotes";
+    private static final List<String> COLUMNS = List.of(CATEGORY_ID, BOOKING_NAME, BOOKING_EMAIL, START_TIME, NOTES);
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * @param input   content of the file
+     * @param format  format of the file
+     * @param maxRows maximum number of rows, blank lines are not counted
+     * @return the rows in the order of the file
+     * @throws IllegalArgumentException if the file cannot be read or has more than {@code maxRows} rows
+     */
+    public List<Row> read(Reader input, Format format, int maxRows) throws IOException {
+        return format == Format.CSV ? readCsv(input, maxRows) : readNdjson(input, maxRows);
+    }
+
+    private List<Row> readNdjson(Reader input, int maxRows) throws IOException {
+        List<Row> rows = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(input);
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            assertRowCount(rows.size() + 1, maxRows);
+
+            Row row = new Row(lineNumber);
+            try {
+                row.request = objectMapper.readValue(line, CreateEventRequest.class);
+            } catch (JsonMappingException e) {
+                List<JsonMappingException.Reference> path = e.getPath();
+                String field = path.isEmpty() || path.get(0).getFieldName() == null ? "row" : path.get(0).getFieldName();
+                row.addError(field, e.getOriginalMessage());
+            } catch (JsonProcessingException e) {
+                row.addError("row", e.getOriginalMessage());
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private List<Row> readCsv(Reader input, int maxRows) throws IOException {
+        CsvRecords records = new CsvRecords(input);
+        List<String> header = records.next();
+        if (header == null) {
+            return List.of();
+        }
+
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String column = header.get(i).strip();
+            if (!COLUMNS.contains(column)) {
+                throw new IllegalArgumentException("Unknown column " + column + ", columns must be " + String.join(", ", COLUMNS));
+            }
+            columns.put(column, i);
+        }
+        for (String column : COLUMNS) {
+            if (!column.equals(NOTES) && !columns.containsKey(column)) {
+                throw new IllegalArgumentException("Missing column " + column);
+            }
+        }
+
+        List<Row> rows = new ArrayList<>();
+        List<String> record;
+        while ((record = records.next()) != null) {
+            assertRowCount(rows.size() + 1, maxRows);
+            rows.add(toRow(records.getRecordLine(), record, columns));
+        }
+        return rows;
+    }
+
+    private static Row toRow(int line, List<String> record, Map<String, Integer> columns) {
+        Row row = new Row(line);
+        CreateEventRequest request = new CreateEventRequest();
+        request.setBookingName(getValue(record, columns, BOOKING_NAME));
+        request.setBookingEmail(getValue(record, columns, BOOKING_EMAIL));
+        request.setEventNotes(getValue(record, columns, NOTES));
+
+        String categoryId = getValue(record, columns, CATEGORY_ID);
+        if (categoryId != null) {
+            try {
+                request.setEventCategoryId(Integer.valueOf(categoryId.strip()));
+            } catch (NumberFormatException e) {
+                row.addError(CATEGORY_ID, "Event category ID must be a number");
+            }
+        }
+
+        String startTime = getValue(record, columns, START_TIME);
+        if (startTime != null) {
+            try {
+                request.setEventStartTime(OffsetDateTime.parse(startTime.strip()));
+            } catch (DateTimeParseException e) {
+                row.addError(START_TIME, "Start time must be an ISO date time with an offset");
+            }
+        }
+
+        row.request = request;
+        return row;
+    }
+
+    @Nullable
+    private static String getValue(List<String> record, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= record.size() || record.get(index).isEmpty()) {
+            return null;
+        }
+        return record.get(index);
+    }
+
+    private static void assertRowCount(int count, int maxRows) {
+        if (count > maxRows) {
+            throw new IllegalArgumentException("A file can have at most " + maxRows + " rows");
+        }
+    }
+
+    @Getter
+    public static class Row {
+        private final int line;
+        /**
+         * The request read from the row, null if the row cannot be read
+         */
+        @Nullable
+        private CreateEventRequest request;
+        private final Map<String, List<String>> errors = new LinkedHashMap<>();
+
+        Row(int line) {
+            this.line = line;
+        }
+
+        void addError(String field, String message) {
+            errors.computeIfAbsent(field, k -> new ArrayList<>()).add(message);
+        }
+
+        public boolean hasErrors() {
+            return !errors.isEmpty();
+        }
+    }
+
+    /**
+     * Records of RFC 4180 CSV: fields separated by commas, optionally quoted with {@code "} and {@code ""} as an escaped quote.
+     * A quoted field can span several lines. Blank lines between records are skipped.
+     */
+    static class CsvRecords {
+        private final PushbackReader reader;
+        private int line = 1;
+        @Getter
+        private int recordLine;
+
+        CsvRecords(Reader reader) {
+            this.reader = new PushbackReader(reader, 1);
+        }
+
+        /**
+         * @return the fields of the next record, null at the end of the input
+         */
+        @Nullable
+        List<String> next() throws IOException {
+            int c = reader.read();
+            while (c == '\r' || c == '\n') {
+                if (c == '\n') {
+                    line++;
+                }
+                c = reader.read();
+            }
+            if (c == -1) {
+                return null;
+            }
+
+            recordLine = line;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IllegalArgumentException("Unclosed quote in the row at line " + recordLine);
+                    } else if (c == '"') {
+                        int next = reader.read();
+                        if (next != '"') {
+                            // closing quote, the next character is read as unquoted
+                            quoted = false;
+                            c = next;
+                            continue;
+                        }
+                        field.append('"');
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\r' || c == '\n' || c == -1) {
+                    if (c == '\r') {
+                        int next = reader.read();
+                        if (next != '\n' && next != -1) {
+                            reader.unread(next);
+                        }
+                    }
+                    if (c != -1) {
+                        line++;
+                    }
+                    fields.add(field.toString());
+                    return fields;
+                } else {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package int221.oasip.backendus3.services.booking;
+
+import int221.oasip.backendus3.dtos.CategoryResponse;
+import int221.oasip.backendus3.dtos.CreateEventRequest;
+import int221.oasip.backendus3.dtos.EventImportResponse;
+import int221.oasip.backendus3.dtos.EventImportRowResponse;
+import int221.oasip.backendus3.entities.Event;
+import int221.oasip.backendus3.entities.EventCategory;
+import int221.oasip.backendus3.repository.EventBatchRepository;
+import int221.oasip.backendus3.repository.EventCategoryRepository;
+import int221.oasip.backendus3.repository.EventInterval;
+import int221.oasip.backendus3.repository.EventRepository;
+import int221.oasip.backendus3.services.MailService;
+import int221.oasip.backendus3.services.cache.AvailabilityCache;
+import int221.oasip.backendus3.services.cache.CategoryCatalogue;
+import int221.oasip.backendus3.services.mail.MailOutboxService;
+import int221.oasip.backendus3.services.mail.OutgoingMail;
+import int221.oasip.backendus3.services.metrics.EventMetrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Nullable;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Create many events from a file, e.g. the bookings planned for a term.
+ * <p>Each row is validated like a single create. The rows are then grouped by category and checked for overlaps
+ * against the existing events with one range query per category, and against the previous rows of the file in memory,
+ * so the first of two overlapping rows wins. The accepted rows are inserted with JDBC batches in one transaction,
+ * admitted by {@link BookingAdmission} for every category of the file, which starts after the rows are read and validated.
+ */
+@Service
+@RequiredArgsConstructor
+public class EventImportService {
+    private final EventImportReader reader;
+    private final Validator validator;
+    private final CategoryCatalogue categoryCatalogue;
+    private final EventCategoryRepository categoryRepository;
+    private final EventRepository repository;
+    private final EventBatchRepository batchRepository;
+    private final EventIntervalIndex intervalIndex;
+    private final AvailabilityCache availabilityCache;
+    private final MailService mailService;
+    private final MailOutboxService mailOutboxService;
+    private final EventMetrics metrics;
+    private final BookingAdmission admission;
+    /**
+     * Maximum number of rows of a file
+     */
+    @Value("${events.import.max-rows:10000}")
+    private int maxRows;
+
+    /**
+     * Import the events of a file
+     *
+     * @param input  content of the file
+     * @param format format of the file
+     * @param notify queue the confirmation mail of every created event
+     * @return the result of every row
+     * @throws IllegalArgumentException if the file cannot be read or has too many rows
+     */
+    public EventImportResponse importEvents(Reader input, EventImportReader.Format format, boolean notify) throws IOException {
+        Timer.Sample sample = Timer.start();
+        try {
+            return importRows(reader.read(input, format, maxRows), notify);
+        } finally {
+            sample.stop(metrics.getImportTimer());
+        }
+    }
+
+    private EventImportResponse importRows(List<EventImportReader.Row> rows, boolean notify) {
+        List<Candidate> candidates = new ArrayList<>(rows.size());
+        Map<Integer, List<Candidate>> byCategory = new LinkedHashMap<>();
+        for (EventImportReader.Row row : rows) {
+            Candidate candidate = new Candidate(row);
+            candidates.add(candidate);
+            if (validate(candidate)) {
+                byCategory.computeIfAbsent(candidate.categoryId, k -> new ArrayList<>()).add(candidate);
+            }
+        }
+
+        int created = byCategory.isEmpty() ? 0 : admission.admit(byCategory.keySet(), () -> insert(byCategory, notify));
+
+        List<EventImportRowResponse> results = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            results.add(candidate.toResponse());
+        }
+        return new EventImportResponse(created, candidates.size() - created, results);
+    }
+
+    /**
+     * Insert the candidates that do not overlap
+     *
+     * @param byCategory valid candidates by category id
+     * @return number of created events
+     */
+    private int insert(Map<Integer, List<Candidate>> byCategory, boolean notify) {
+        List<Candidate> acceptedCandidates = new ArrayList<>();
+        for (Map.Entry<Integer, List<Candidate>> entry : byCategory.entrySet()) {
+            EventCategory category = categoryRepository.getById(entry.getKey());
+            for (Candidate candidate : entry.getValue()) {
+                candidate.event.setEventCategory(category, candidate.event.getEventDuration());
+            }
+            acceptedCandidates.addAll(resolveOverlaps(entry.getKey(), entry.getValue()));
+        }
+        // keep the order of the file, so the generated ids follow it
+        acceptedCandidates.sort(Comparator.comparingInt(candidate -> candidate.row.getLine()));
+        List<Event> accepted = new ArrayList<>(acceptedCandidates.size());
+        for (Candidate candidate : acceptedCandidates) {
+            accepted.add(candidate.event);
+        }
+        batchRepository.insertAll(accepted);
+
+        List<OutgoingMail> mails = new ArrayList<>();
+        for (Event event : accepted) {
+            Integer categoryId = event.getEventCategory().getId();
+            // applied when the import commits, a rolled back import leaves the index untouched
+            intervalIndex.put(new EventInterval(event.getId(), categoryId, event.getEventStartTime(), event.getEventDuration()));
+            availabilityCache.invalidate(categoryId, event.getEventStartTime());
+            if (notify) {
+                String categoryName = categoryCatalogue.get().findById(categoryId).map(CategoryResponse::getEventCategoryName).orElse("");
+                mails.add(mailService.createBookingConfirmation(event, categoryName));
+            }
+        }
+        mailOutboxService.enqueueAll(mails);
+        return accepted.size();
+    }
+
+    /**
+     * Validate the row and create its event
+     *
+     * @return true if the event can be checked for overlaps
+     */
+    private boolean validate(Candidate candidate) {
+        EventImportReader.Row row = candidate.row;
+        CreateEventRequest request = row.getRequest();
+        if (request == null || row.hasErrors()) {
+            candidate.reject(EventImportRowResponse.Status.INVALID, row.getErrors());
+            return false;
+        }
+
+        Map<String, List<String>> errors = new LinkedHashMap<>();
+        for (ConstraintViolation<CreateEventRequest> violation : validator.validate(request)) {
+            errors.computeIfAbsent(violation.getPropertyPath().toString(), k -> new ArrayList<>()).add(violation.getMessage());
+        }
+        if (!errors.isEmpty()) {
+            candidate.reject(EventImportRowResponse.Status.INVALID, errors);
+            return false;
+        }
+
+        Integer categoryId = request.getEventCategoryId();
+        Optional<CategoryResponse> category = categoryCatalogue.get().findById(categoryId);
+        if (category.isEmpty()) {
+            candidate.reject(EventImportRowResponse.Status.NOT_FOUND,
+                    Map.of(EventImportReader.CATEGORY_ID, List.of("Event category with id " + categoryId + " not found")));
+            return false;
+        }
+
+        // the category reference is set once the transaction is started
+        Event event = new Event();
+        event.setEventDuration(category.get().getEventDuration());
+        event.setBookingName(request.getBookingName().strip());
+        event.setBookingEmail(request.getBookingEmail().strip());
+        event.setEventStartTime(request.getEventStartTime().toInstant());
+        if (request.getEventNotes() != null) {
+            event.setEventNotes(request.getEventNotes().strip());
+        }
+        candidate.categoryId = categoryId;
+        candidate.event = event;
+        return true;
+    }
+
+    /**
+     * Reject the candidates of one category that overlap with an existing event or with a previous candidate
+     *
+     * @param categoryId category id of the candidates
+     * @param candidates candidates in the order of the file
+     * @return the accepted candidates
+     */
+    private List<Candidate> resolveOverlaps(Integer categoryId, List<Candidate> candidates) {
+        Instant startAt = Instant.MAX;
+        Instant endAt = Instant.MIN;
+        for (Candidate candidate : candidates) {
+            Instant start = candidate.event.getEventStartTime();
+            Instant end = start.plus(candidate.event.getEventDuration(), ChronoUnit.MINUTES);
+            startAt = start.isBefore(startAt) ? start : startAt;
+            endAt = end.isAfter(endAt) ? end : endAt;
+        }
+
+        EventIntervalIndex.CategoryIntervals intervals = new EventIntervalIndex.CategoryIntervals();
+        for (EventInterval existing : repository.findOverlapIntervalsByCategoryId(startAt, endAt, categoryId)) {
+            intervals.put(existing.getEventId(), existing.getStartTime().toEpochMilli(), existing.getEndTime().toEpochMilli());
+        }
+
+        List<Candidate> accepted = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            long start = candidate.event.getEventStartTime().toEpochMilli();
+            long end = start + candidate.event.getEventDuration() * 60_000L;
+            if (intervals.overlaps(start, end, null)) {
+                metrics.getImportOverlapRejections().increment();
+                candidate.reject(EventImportRowResponse.Status.OVERLAP,
+                        Map.of(EventImportReader.START_TIME, List.of("Start time overlaps with other event(s)")));
+                continue;
+            }
+
+            // negative, so it cannot be mistaken for the id of an existing event
+            intervals.put(-candidate.row.getLine(), start, end);
+            accepted.add(candidate);
+        }
+        return accepted;
+    }
+
+    private static class Candidate {
+        private final EventImportReader.Row row;
+        @Nullable
+        private Integer categoryId;
+        @Nullable
+        private Event event;
+        @Nullable
+        private EventImportRowResponse.Status rejection;
+        @Nullable
+        private Map<String, List<String>> errors;
+
+        Candidate(EventImportReader.Row row) {
+            this.row = row;
+        }
+
+        void reject(EventImportRowResponse.Status status, Map<String, List<String>> errors) {
+            this.rejection = status;
+            this.errors = errors;
+        }
+
+        EventImportRowResponse toResponse() {
+            if (rejection != null) {
+                return new EventImportRowResponse(row.getLine(), rejection, null, errors);
+            }
+            return new EventImportRowResponse(row.getLine(), EventImportRowResponse.Status.CREATED, event.getId(), null);
+        }
+    }
+}
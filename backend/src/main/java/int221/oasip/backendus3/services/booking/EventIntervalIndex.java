@@ -0,0 +1,211 @@
+package int221.oasip.backendus3.services.booking;
+
+import int221.oasip.backendus3.configs.BookingAdmissionProps;
+import int221.oasip.backendus3.entities.Event;
+import int221.oasip.backendus3.repository.EventInterval;
+import int221.oasip.backendus3.repository.EventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of the time range of every event that had not ended when the application started,
+ * plus every event created or updated by this backend since then, grouped by category.
+ * <p>It answers overlap checks without a database round trip. A hit should still be confirmed by the database,
+ * while a miss can be trusted for any time range that starts at or after {@link #covers(Instant) the horizon},
+ * as long as no other backend writes events, see {@link OverlapChecker}.
+ * <p>Changes made in a transaction are applied once it commits, so the index never holds an event that was
+ * rolled back nor loses one whose delete or move was rolled back.
+ * <p>When several backends share the database ({@link BookingAdmissionProps#isDistributed()}) the index is neither
+ * loaded nor updated, and covers nothing.
+ */
+@Service
+@RequiredArgsConstructor
+public class EventIntervalIndex {
+    private final EventRepository repository;
+    private final BookingAdmissionProps props;
+    private final Map<Integer, CategoryIntervals> categories = new ConcurrentHashMap<>();
+    /**
+     * Events that ended before this instant are not in the index, nothing is covered until the index is loaded
+     */
+    private volatile Instant horizon = Instant.MAX;
+
+    @PostConstruct
+    public void load() {
+        if (props.isDistributed()) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        categories.clear();
+        for (EventInterval interval : repository.findIntervalsEndingAfter(now)) {
+            getCategoryIntervals(interval.getCategoryId())
+                    .put(interval.getEventId(), interval.getStartTime().toEpochMilli(), interval.getEndTime().toEpochMilli());
+        }
+        horizon = now;
+    }
+
+    /**
+     * Check if the index has every event that may overlap with a time range starting at {@code startAt}
+     *
+     * @param startAt start time of the range to check
+     * @return true if the result of {@link #overlaps} can be trusted when it returns false
+     */
+    public boolean covers(Instant startAt) {
+        return !startAt.isBefore(horizon);
+    }
+
+    /**
+     * Check if any indexed event in the category overlaps with {@code [startAt, endAt)}
+     *
+     * @param categoryId     category id of event
+     * @param startAt        start time of event
+     * @param endAt          end time of event
+     * @param excludeEventId event id to be excluded, usually the event being updated
+     * @return true if at least one indexed event overlaps
+     */
+    public boolean overlaps(Integer categoryId, Instant startAt, Instant endAt, @Nullable Integer excludeEventId) {
+        CategoryIntervals intervals = categories.get(categoryId);
+        return intervals != null && intervals.overlaps(startAt.toEpochMilli(), endAt.toEpochMilli(), excludeEventId);
+    }
+
+    /**
+     * Add the event to the index, or move it if it is already indexed, once the current transaction commits
+     *
+     * @param event a saved event
+     */
+    public void put(Event event) {
+        if (props.isDistributed()) {
+            return;
+        }
+
+        int eventId = event.getId();
+        Integer categoryId = event.getEventCategory().getId();
+        long start = event.getEventStartTime().toEpochMilli();
+        long end = start + event.getEventDuration() * 60_000L;
+        afterCommit(() -> getCategoryIntervals(categoryId).put(eventId, start, end));
+    }
+
+    /**
+     * Same as {@link #put(Event)} for an event that is not loaded as an entity
+     *
+     * @param interval time range of a saved event
+     */
+    public void put(EventInterval interval) {
+        if (props.isDistributed()) {
+            return;
+        }
+
+        int eventId = interval.getEventId();
+        Integer categoryId = interval.getCategoryId();
+        long start = interval.getStartTime().toEpochMilli();
+        long end = interval.getEndTime().toEpochMilli();
+        afterCommit(() -> getCategoryIntervals(categoryId).put(eventId, start, end));
+    }
+
+    /**
+     * Remove the event from the index once the current transaction commits
+     *
+     * @param event a deleted event
+     */
+    public void remove(Event event) {
+        if (props.isDistributed()) {
+            return;
+        }
+
+        int eventId = event.getId();
+        Integer categoryId = event.getEventCategory().getId();
+        afterCommit(() -> {
+            CategoryIntervals intervals = categories.get(categoryId);
+            if (intervals != null) {
+                intervals.remove(eventId);
+            }
+        });
+    }
+
+    /**
+     * Run the change when the current transaction commits, or now if there is no transaction
+     */
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+
+    private CategoryIntervals getCategoryIntervals(Integer categoryId) {
+        return categories.computeIfAbsent(categoryId, k -> new CategoryIntervals());
+    }
+
+    /**
+     * Intervals of one category, sorted by start time.
+     * Since an interval cannot be longer than the longest one seen so far, only the intervals starting within
+     * that length before a time range need to be visited to find the overlaps.
+     */
+    static class CategoryIntervals {
+        private final NavigableSet<Interval> byStartTime = new TreeSet<>();
+        private final Map<Integer, Interval> byEventId = new HashMap<>();
+        private long maxLength = 0;
+
+        synchronized void put(int eventId, long start, long end) {
+            Interval previous = byEventId.remove(eventId);
+            if (previous != null) {
+                byStartTime.remove(previous);
+            }
+
+            Interval interval = new Interval(start, end, eventId);
+            byStartTime.add(interval);
+            byEventId.put(eventId, interval);
+            maxLength = Math.max(maxLength, end - start);
+        }
+
+        synchronized void remove(int eventId) {
+            Interval interval = byEventId.remove(eventId);
+            if (interval != null) {
+                byStartTime.remove(interval);
+            }
+        }
+
+        synchronized boolean overlaps(long start, long end, @Nullable Integer excludeEventId) {
+            Interval from = new Interval(start - maxLength, Long.MIN_VALUE, Integer.MIN_VALUE);
+            Interval to = new Interval(end, Long.MIN_VALUE, Integer.MIN_VALUE);
+            for (Interval interval : byStartTime.subSet(from, true, to, false)) {
+                if (interval.end > start && (excludeEventId == null || interval.eventId != excludeEventId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static class Interval implements Comparable<Interval> {
+        final long start;
+        final long end;
+        final int eventId;
+
+        Interval(long start, long end, int eventId) {
+            this.start = start;
+            this.end = end;
+            this.eventId = eventId;
+        }
+
+        @Override
+        public int compareTo(Interval other) {
+            int result = Long.compare(start, other.start);
+            return result != 0 ? result : Integer.compare(eventId, other.eventId);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package int221.oasip.backendus3.services.booking;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Find the free slots nearest to a desired start time with one sweep over the sorted busy intervals.
+ * Times are in epoch seconds.
+ */
+public final class FreeSlotFinder {
+    private FreeSlotFinder() {
+    }
+
+    /**
+     * @param busyStarts  start times of the busy intervals, sorted
+     * @param busyEnds    end times of the busy intervals, in the same order as {@code busyStarts}
+     * @param desired     desired start time
+     * @param duration    length of a slot
+     * @param windowStart earliest start of a slot
+     * @param windowEnd   latest end of a slot
+     * @param count       maximum number of slots
+     * @return start times of at most {@code count} free and non-overlapping slots, the nearest to {@code desired}, sorted
+     */
+    public static long[] findNearest(long[] busyStarts, long[] busyEnds, long desired, long duration,
+                                     long windowStart, long windowEnd, int count) {
+        // pairs of distance to the desired time and start time
+        List<long[]> candidates = new ArrayList<>();
+        long gapStart = windowStart;
+        for (int i = 0; i <= busyStarts.length && gapStart < windowEnd; i++) {
+            long gapEnd = i < busyStarts.length ? Math.min(busyStarts[i], windowEnd) : windowEnd;
+            addCandidates(candidates, gapStart, gapEnd, desired, duration, count);
+            if (i < busyStarts.length) {
+                gapStart = Math.max(gapStart, busyEnds[i]);
+            }
+        }
+
+        candidates.sort(Comparator.<long[]>comparingLong(c -> c[0]).thenComparingLong(c -> c[1]));
+        return candidates.stream()
+                .limit(count)
+                .mapToLong(c -> c[1])
+                .sorted()
+                .toArray();
+    }
+
+    /**
+     * Add the slots of a gap nearest to the desired time, stepping by the duration so they do not overlap each other
+     */
+    private static void addCandidates(List<long[]> candidates, long gapStart, long gapEnd, long desired, long duration, int count) {
+        long latestStart = gapEnd - duration;
+        if (latestStart < gapStart) {
+            return;
+        }
+
+        long nearest = Math.max(gapStart, Math.min(desired, latestStart));
+        for (int k = 0; k < count && nearest + k * duration <= latestStart; k++) {
+            long start = nearest + k * duration;
+            candidates.add(new long[]{Math.abs(start - desired), start});
+        }
+        for (int k = 1; k < count && nearest - k * duration >= gapStart; k++) {
+            long start = nearest - k * duration;
+            candidates.add(new long[]{Math.abs(start - desired), start});
+        }
+    }
+}
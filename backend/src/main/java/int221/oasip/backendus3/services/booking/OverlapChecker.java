@@ -0,0 +1,37 @@
+package int221.oasip.backendus3.services.booking;
+
+import int221.oasip.backendus3.repository.EventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import java.time.Instant;
+
+/**
+ * Check if a booking overlaps with the events of its category, from a booking admitted by {@link BookingAdmission}.
+ * <p>When several backends share the database ({@link int221.oasip.backendus3.configs.BookingAdmissionProps#isDistributed()}),
+ * the {@link EventIntervalIndex} of this backend would never see the events written by the others, so it is not kept
+ * and covers nothing: every check is answered by the database, under the category row lock taken by the admission.
+ * With a single backend the index holds every committed event, so a miss is trusted and only a hit is confirmed.
+ */
+@Component
+@RequiredArgsConstructor
+public class OverlapChecker {
+    private final EventIntervalIndex intervalIndex;
+    private final EventRepository repository;
+
+    /**
+     * @param startAt        start time of the booking
+     * @param endAt          end time of the booking
+     * @param categoryId     category id of the booking
+     * @param excludeEventId event id to be excluded, usually the event being updated
+     * @return true if at least one event overlaps
+     */
+    public boolean hasOverlap(Instant startAt, Instant endAt, Integer categoryId, @Nullable Integer excludeEventId) {
+        if (intervalIndex.covers(startAt)
+                && !intervalIndex.overlaps(categoryId, startAt, endAt, excludeEventId)) {
+            return false;
+        }
+        return repository.existsOverlapEventsByCategoryId(startAt, endAt, categoryId, excludeEventId);
+    }
+}
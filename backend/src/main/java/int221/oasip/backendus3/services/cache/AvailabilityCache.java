@@ -0,0 +1,236 @@
+package int221.oasip.backendus3.services.cache;
+
+import int221.oasip.backendus3.dtos.EventTimeSlotResponse;
+import int221.oasip.backendus3.exceptions.EntityNotFoundException;
+import int221.oasip.backendus3.repository.EventInterval;
+import int221.oasip.backendus3.repository.EventRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Time slots of the events of a category that start in a day, keyed by the category and the start of the day
+ * as sent by the client (its local midnight).
+ * <p>A change of an event invalidates exactly the cached days whose range contains its start time.
+ * Concurrent misses of the same day share one query, and entries expire after {@code events.availability-cache.ttl}
+ * to pick up changes made by other instances.
+ * <p>The days are chosen by unauthenticated clients, so only the categories of the {@link CategoryCatalogue} are cached,
+ * with at most {@code events.availability-cache.max-days-per-category} days each. The expired days of a category
+ * are purged before a new one is added, and a day that does not fit is loaded without being cached.
+ */
+@Service
+public class AvailabilityCache {
+    private static final long DAY_SECONDS = 24 * 60 * 60;
+
+    private final EventRepository repository;
+    private final CategoryCatalogue categoryCatalogue;
+    @Value("${events.availability-cache.ttl:30s}")
+    private Duration ttl;
+    @Value("${events.availability-cache.max-days-per-category:512}")
+    private int maxDaysPerCategory;
+    /**
+     * Start of the day in epoch seconds to its slots, for each category
+     */
+    private final Map<Integer, NavigableMap<Long, CompletableFuture<DaySlots>>> categories = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public AvailabilityCache(EventRepository repository, CategoryCatalogue categoryCatalogue, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.categoryCatalogue = categoryCatalogue;
+        FunctionCounter.builder("oasip.availability.cache", hits, LongAdder::sum)
+                .description("Days of time slots found in the availability cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("oasip.availability.cache", misses, LongAdder::sum)
+                .description("Days of time slots loaded from the database")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param categoryId category id of the events
+     * @param startAt    start of the day, as sent by the client
+     * @return the events of the category that start in {@code [startAt, startAt + 1 day)}
+     * @throws EntityNotFoundException if the category does not exist
+     */
+    public DaySlots get(Integer categoryId, Instant startAt) {
+        if (categoryCatalogue.get().findById(categoryId).isEmpty()) {
+            throw new EntityNotFoundException("Event category with id " + categoryId + " not found");
+        }
+
+        NavigableMap<Long, CompletableFuture<DaySlots>> days = categories.computeIfAbsent(categoryId, k -> new ConcurrentSkipListMap<>());
+        Long key = startAt.getEpochSecond();
+
+        CompletableFuture<DaySlots> future;
+        CompletableFuture<DaySlots> loading = null;
+        while (true) {
+            future = days.get(key);
+            if (future != null && !isExpired(future)) {
+                break;
+            }
+            if (future == null && !hasRoomForDay(days)) {
+                misses.increment();
+                return new DaySlots(key, repository.findIntervalsByDateRangeOfOneDay(startAt, categoryId));
+            }
+
+            loading = new CompletableFuture<>();
+            boolean claimed = future == null ? days.putIfAbsent(key, loading) == null : days.replace(key, future, loading);
+            if (claimed) {
+                future = loading;
+                break;
+            }
+        }
+
+        if (future != loading) {
+            hits.increment();
+            return join(future);
+        }
+
+        misses.increment();
+        try {
+            loading.complete(new DaySlots(key, repository.findIntervalsByDateRangeOfOneDay(startAt, categoryId)));
+        } catch (RuntimeException e) {
+            days.remove(key, loading);
+            loading.completeExceptionally(e);
+        }
+        return join(loading);
+    }
+
+    /**
+     * Invalidate every cached day that contains {@code startTime}, now and again when the current transaction completes
+     *
+     * @param categoryId category id of the changed event
+     * @param startTime  start time of the changed event, call it with both the old and the new time when an event is moved
+     */
+    public void invalidate(Integer categoryId, Instant startTime) {
+        invalidateNow(categoryId, startTime);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidateNow(categoryId, startTime);
+                }
+            });
+        }
+    }
+
+    private void invalidateNow(Integer categoryId, Instant startTime) {
+        NavigableMap<Long, CompletableFuture<DaySlots>> days = categories.get(categoryId);
+        if (days != null) {
+            // a day starting at d contains the times in [d, d + 1 day)
+            long second = startTime.getEpochSecond();
+            days.subMap(second - DAY_SECONDS, false, second, true).clear();
+        }
+    }
+
+    private boolean isExpired(CompletableFuture<DaySlots> future) {
+        if (!future.isDone()) {
+            return false;
+        }
+        DaySlots slots = future.getNow(null);
+        return slots == null || System.nanoTime() - slots.loadedAt >= ttl.toNanos();
+    }
+
+    /**
+     * Purge the expired days of a category, then check if another day can be added
+     */
+    private boolean hasRoomForDay(NavigableMap<Long, CompletableFuture<DaySlots>> days) {
+        days.entrySet().removeIf(entry -> isExpired(entry.getValue()));
+        return days.size() < maxDaysPerCategory;
+    }
+
+    private static DaySlots join(CompletableFuture<DaySlots> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Events of one day as a flat array of (start in seconds after the start of the day, duration in minutes, event id),
+     * ordered by start time
+     */
+    public static class DaySlots {
+        private static final int FIELDS = 3;
+
+        @Getter
+        private final Instant startAt;
+        private final int[] slots;
+        private final long loadedAt = System.nanoTime();
+
+        DaySlots(long startAtSecond, List<EventInterval> intervals) {
+            this.startAt = Instant.ofEpochSecond(startAtSecond);
+            this.slots = new int[intervals.size() * FIELDS];
+            int i = 0;
+            for (EventInterval interval : intervals) {
+                slots[i++] = (int) (interval.getStartTime().getEpochSecond() - startAtSecond);
+                slots[i++] = (int) Duration.between(interval.getStartTime(), interval.getEndTime()).toMinutes();
+                slots[i++] = interval.getEventId();
+            }
+        }
+
+        public int size() {
+            return slots.length / FIELDS;
+        }
+
+        public Instant getStartTime(int index) {
+            return startAt.plusSeconds(slots[index * FIELDS]);
+        }
+
+        public int getDuration(int index) {
+            return slots[index * FIELDS + 1];
+        }
+
+        public int getEventId(int index) {
+            return slots[index * FIELDS + 2];
+        }
+
+        public List<EventTimeSlotResponse> toResponses(Integer categoryId, @Nullable Integer excludeEventId) {
+            List<EventTimeSlotResponse> responses = new ArrayList<>(size());
+            for (int i = 0; i < size(); i++) {
+                if (excludeEventId == null || getEventId(i) != excludeEventId) {
+                    responses.add(new EventTimeSlotResponse(getStartTime(i), getDuration(i), categoryId));
+                }
+            }
+            return responses;
+        }
+
+        /**
+         * @return pairs of start in seconds after {@link #getStartAt()} and duration in minutes
+         */
+        public int[] toCompactSlots(@Nullable Integer excludeEventId) {
+            int[] compact = new int[size() * 2];
+            int length = 0;
+            for (int i = 0; i < size(); i++) {
+                if (excludeEventId == null || getEventId(i) != excludeEventId) {
+                    compact[length++] = slots[i * FIELDS];
+                    compact[length++] = slots[i * FIELDS + 1];
+                }
+            }
+            return length == compact.length ? compact : Arrays.copyOf(compact, length);
+        }
+    }
+}
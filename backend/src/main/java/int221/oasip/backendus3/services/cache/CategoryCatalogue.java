@@ -0,0 +1,97 @@
+package int221.oasip.backendus3.services.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import int221.oasip.backendus3.dtos.CategoryResponse;
+import int221.oasip.backendus3.mappers.CategoryMapper;
+import int221.oasip.backendus3.repository.EventCategoryRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process copy of every event category, with the JSON of {@code GET /api/categories} and its ETag.
+ * <p>It is invalidated by {@link int221.oasip.backendus3.services.EventCategoryService#update},
+ * and reloaded after {@code categories.cache.ttl} to pick up changes made by other instances.
+ */
+@Service
+@RequiredArgsConstructor
+public class CategoryCatalogue {
+    private final EventCategoryRepository repository;
+    private final CategoryMapper categoryMapper;
+    private final ObjectMapper objectMapper;
+    @Value("${categories.cache.ttl:1m}")
+    private Duration ttl;
+    private final AtomicLong generation = new AtomicLong();
+    @Nullable
+    private volatile Snapshot snapshot;
+
+    public Snapshot get() {
+        Snapshot current = snapshot;
+        if (current != null && System.nanoTime() - current.loadedAt < ttl.toNanos()) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = snapshot;
+            if (current != null && System.nanoTime() - current.loadedAt < ttl.toNanos()) {
+                return current;
+            }
+
+            long loadedGeneration = generation.get();
+            current = load();
+            if (generation.get() == loadedGeneration) {
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    private Snapshot load() {
+        List<CategoryResponse> categories = categoryMapper.toResponses(repository.findAll());
+        try {
+            return new Snapshot(categories, objectMapper.writeValueAsBytes(categories));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize the categories", e);
+        }
+    }
+
+    /**
+     * Categories at one point in time, must not be modified
+     */
+    @Getter
+    public static class Snapshot {
+        private final List<CategoryResponse> categories;
+        private final Map<Integer, CategoryResponse> categoriesById;
+        private final byte[] json;
+        private final String eTag;
+        private final long loadedAt = System.nanoTime();
+
+        Snapshot(List<CategoryResponse> categories, byte[] json) {
+            this.categories = Collections.unmodifiableList(categories);
+            Map<Integer, CategoryResponse> categoriesById = new HashMap<>();
+            for (CategoryResponse category : categories) {
+                categoriesById.put(category.getId(), category);
+            }
+            this.categoriesById = Collections.unmodifiableMap(categoriesById);
+            this.json = json;
+            this.eTag = "\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+        }
+
+        public Optional<CategoryResponse> findById(Integer id) {
+            return Optional.ofNullable(categoriesById.get(id));
+        }
+    }
+}
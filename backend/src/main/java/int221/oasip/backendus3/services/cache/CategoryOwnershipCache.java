@@ -0,0 +1,104 @@
+package int221.oasip.backendus3.services.cache;
+
+import int221.oasip.backendus3.repository.EventCategoryOwnerRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ids of the categories owned by each lecturer, as sorted arrays.
+ * <p>Entries are invalidated by every write to {@code eventCategoryOwner}
+ * (see {@link CategoryOwnershipListener}) and by changes of a user email.
+ * These only run in the backend that made the write, so entries also expire after {@code categories.ownership-cache.ttl}
+ * to pick up changes made by other instances.
+ */
+@Service
+public class CategoryOwnershipCache {
+    private final EventCategoryOwnerRepository repository;
+    @Value("${categories.ownership-cache.ttl:30s}")
+    private Duration ttl;
+    private final Map<String, Entry> entriesByEmail = new ConcurrentHashMap<>();
+    /**
+     * Incremented by every invalidation, so a result loaded before an invalidation is not cached after it
+     */
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CategoryOwnershipCache(EventCategoryOwnerRepository repository, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        FunctionCounter.builder("oasip.ownership.cache", hits, LongAdder::sum)
+                .description("Lecturer category ownerships found in the cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("oasip.ownership.cache", misses, LongAdder::sum)
+                .description("Lecturer category ownerships loaded from the database")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("oasip.ownership.cache.size", entriesByEmail, Map::size)
+                .description("Lecturers in the category ownership cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param email email of the lecturer
+     * @return sorted ids of the categories owned by the lecturer, must not be modified
+     */
+    public int[] getCategoryIds(String email) {
+        String key = toKey(email);
+        Entry entry = entriesByEmail.get(key);
+        if (entry != null && System.nanoTime() - entry.loadedAt < ttl.toNanos()) {
+            hits.increment();
+            return entry.categoryIds;
+        }
+
+        misses.increment();
+        long loadedGeneration = generation.get();
+        List<Integer> loaded = repository.findCategoryIdsByOwnerEmail(email);
+        entry = new Entry(loaded.stream().mapToInt(Integer::intValue).sorted().distinct().toArray());
+        if (generation.get() == loadedGeneration) {
+            entriesByEmail.put(key, entry);
+            if (generation.get() != loadedGeneration) {
+                // invalidated while putting, the loaded ids may be stale
+                entriesByEmail.remove(key, entry);
+            }
+        }
+        return entry.categoryIds;
+    }
+
+    public void invalidate(String email) {
+        generation.incrementAndGet();
+        entriesByEmail.remove(toKey(email));
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entriesByEmail.clear();
+    }
+
+    /**
+     * Emails are compared case-insensitively by the database collation
+     */
+    private static String toKey(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    private static class Entry {
+        private final int[] categoryIds;
+        private final long loadedAt = System.nanoTime();
+
+        Entry(int[] categoryIds) {
+            this.categoryIds = categoryIds;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package int221.oasip.backendus3.services.cache;
+
+import int221.oasip.backendus3.entities.EventCategoryOwner;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Invalidate {@link CategoryOwnershipCache} on every write of an {@link EventCategoryOwner}.
+ * <p>The entry is invalidated when the write is flushed and again when the transaction completes,
+ * so a concurrent request cannot cache the rows as they were before the commit.
+ */
+@Component
+@RequiredArgsConstructor
+public class CategoryOwnershipListener {
+    private final CategoryOwnershipCache cache;
+
+    @PostPersist
+    @PostRemove
+    public void invalidate(EventCategoryOwner owner) {
+        String email = owner.getOwnerEmail();
+        cache.invalidate(email);
+        afterTransaction(() -> cache.invalidate(email));
+    }
+
+    /**
+     * The previous owner email is not known anymore, so every entry is invalidated
+     */
+    @PostUpdate
+    public void invalidateAll(EventCategoryOwner owner) {
+        cache.invalidateAll();
+        afterTransaction(cache::invalidateAll);
+    }
+
+    private static void afterTransaction(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        }
+    }
+}
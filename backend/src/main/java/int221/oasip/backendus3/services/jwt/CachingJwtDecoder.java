@@ -0,0 +1,32 @@
+package int221.oasip.backendus3.services.jwt;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+/**
+ * Look up the {@link VerifiedTokenCache} before asking the {@code delegate},
+ * so the signature of a token is checked once instead of on every request.
+ * Rejected tokens are never cached.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+    private final JwtDecoder delegate;
+    private final VerifiedTokenCache verifiedTokens;
+
+    public CachingJwtDecoder(JwtDecoder delegate, VerifiedTokenCache verifiedTokens) {
+        this.delegate = delegate;
+        this.verifiedTokens = verifiedTokens;
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        Jwt jwt = verifiedTokens.get(token);
+        if (jwt != null) {
+            return jwt;
+        }
+
+        jwt = delegate.decode(token);
+        verifiedTokens.put(token, jwt);
+        return jwt;
+    }
+}
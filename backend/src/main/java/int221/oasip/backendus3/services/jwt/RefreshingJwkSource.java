@@ -0,0 +1,120 @@
+package int221.oasip.backendus3.services.jwt;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Key set of a remote issuer, fetched when {@link #start() started} and refreshed in the background,
+ * so verifying a token does not wait for the keys.
+ * <p>If a token is signed by a key that is not in the set yet, the set is fetched again by the request,
+ * at most once per {@code minRefreshInterval}.
+ */
+@Slf4j
+public class RefreshingJwkSource implements JWKSource<SecurityContext>, AutoCloseable {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    private final URI jwkSetUri;
+    private final Duration refreshInterval;
+    private final Duration minRefreshInterval;
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(REQUEST_TIMEOUT).build();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jwk-set-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong lastFetchAttempt;
+    @Nullable
+    private volatile JWKSet jwkSet;
+
+    /**
+     * @param jwkSetUri          where to fetch the key set
+     * @param refreshInterval    time between two background refreshes
+     * @param minRefreshInterval minimum time between two refreshes caused by an unknown key
+     */
+    public RefreshingJwkSource(URI jwkSetUri, Duration refreshInterval, Duration minRefreshInterval) {
+        this.jwkSetUri = jwkSetUri;
+        this.refreshInterval = refreshInterval;
+        this.minRefreshInterval = minRefreshInterval;
+        this.lastFetchAttempt = new AtomicLong(System.nanoTime() - minRefreshInterval.toNanos());
+    }
+
+    /**
+     * Fetch the key set, then keep refreshing it in the background.
+     * A failed fetch does not stop the application, it is retried with the next refresh.
+     */
+    public void start() {
+        refresh();
+        scheduler.scheduleWithFixedDelay(this::refresh, refreshInterval.toMillis(), refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    @Nullable
+    public JWKSet getJwkSet() {
+        return jwkSet;
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+        JWKSet keys = jwkSet;
+        List<JWK> matches = keys == null ? List.of() : jwkSelector.select(keys);
+        if (!matches.isEmpty()) {
+            return matches;
+        }
+
+        // the key may be new, fetch again unless a request did it recently
+        long now = System.nanoTime();
+        long lastAttempt = lastFetchAttempt.get();
+        if (now - lastAttempt < minRefreshInterval.toNanos() || !lastFetchAttempt.compareAndSet(lastAttempt, now)) {
+            return matches;
+        }
+        keys = fetch();
+        return keys == null ? List.of() : jwkSelector.select(keys);
+    }
+
+    private void refresh() {
+        fetch();
+    }
+
+    @Nullable
+    private JWKSet fetch() {
+        HttpRequest request = HttpRequest.newBuilder(jwkSetUri).timeout(REQUEST_TIMEOUT).GET().build();
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                log.warn("Failed to fetch the key set from {}: status {}", jwkSetUri, response.statusCode());
+                return jwkSet;
+            }
+            JWKSet fetched = JWKSet.parse(response.body());
+            jwkSet = fetched;
+            return fetched;
+        } catch (IOException | ParseException e) {
+            log.warn("Failed to fetch the key set from {}: {}", jwkSetUri, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return jwkSet;
+    }
+}
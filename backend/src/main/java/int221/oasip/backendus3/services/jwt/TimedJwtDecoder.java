@@ -0,0 +1,47 @@
+package int221.oasip.backendus3.services.jwt;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+/**
+ * Record the time the {@code delegate} takes to decode and validate a token, tagged by issuer and result
+ */
+public class TimedJwtDecoder implements JwtDecoder {
+    private final JwtDecoder delegate;
+    private final Timer validTimer;
+    private final Timer invalidTimer;
+
+    /**
+     * @param issuer name of the issuer of the tokens, e.g. {@code oasip}
+     */
+    public TimedJwtDecoder(JwtDecoder delegate, MeterRegistry meterRegistry, String issuer) {
+        this.delegate = delegate;
+        this.validTimer = decodeTimer(meterRegistry, issuer, "valid");
+        this.invalidTimer = decodeTimer(meterRegistry, issuer, "invalid");
+    }
+
+    private static Timer decodeTimer(MeterRegistry meterRegistry, String issuer, String result) {
+        return Timer.builder("oasip.jwt.decode")
+                .description("Time to decode and validate a bearer token")
+                .tag("issuer", issuer)
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        Timer.Sample sample = Timer.start();
+        try {
+            Jwt jwt = delegate.decode(token);
+            sample.stop(validTimer);
+            return jwt;
+        } catch (JwtException e) {
+            sample.stop(invalidTimer);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package int221.oasip.backendus3.services.jwt;
+
+import int221.oasip.backendus3.configs.OasipJwtProps;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tokens already verified by the decoder of their issuer, shared by every {@link CachingJwtDecoder}.
+ * <p>Entries are keyed by the SHA-256 of the token, so the tokens themselves are not kept, and are dropped at the
+ * {@code exp} of the token. Tokens without {@code exp} are never cached.
+ * When the cache is full, the expired entries are purged and new tokens are not cached until there is room again.
+ * <p>Sharing the cache between issuers is safe since {@code iss} is part of the signed token:
+ * a cached token is always routed back to the decoder of the issuer that verified it.
+ */
+@Component
+public class VerifiedTokenCache {
+    private final int maxSize;
+    private final Clock clock;
+    private final Map<ByteBuffer, Jwt> verifiedTokens = new ConcurrentHashMap<>();
+    private final AtomicBoolean purging = new AtomicBoolean();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Autowired
+    public VerifiedTokenCache(OasipJwtProps jwtProps, MeterRegistry meterRegistry) {
+        this(jwtProps.getCacheMaxSize(), Clock.systemUTC());
+        FunctionCounter.builder("oasip.jwt.cache", hits, LongAdder::sum)
+                .description("Bearer tokens found in the cache of verified tokens")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("oasip.jwt.cache", misses, LongAdder::sum)
+                .description("Bearer tokens verified by the decoder of their issuer")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    VerifiedTokenCache(int maxSize, Clock clock) {
+        this.maxSize = maxSize;
+        this.clock = clock;
+    }
+
+    /**
+     * @param token the encoded token
+     * @return the verified token if it is cached and has not expired
+     */
+    @Nullable
+    public Jwt get(String token) {
+        Jwt jwt = peek(token);
+        if (jwt != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return jwt;
+    }
+
+    /**
+     * Same as {@link #get} without counting a hit or a miss, for lookups that do not replace a verification
+     */
+    @Nullable
+    public Jwt peek(String token) {
+        ByteBuffer key = hash(token);
+        Jwt jwt = verifiedTokens.get(key);
+        if (jwt != null && !isLive(jwt, clock.instant())) {
+            verifiedTokens.remove(key, jwt);
+            return null;
+        }
+        return jwt;
+    }
+
+    /**
+     * @param token the encoded token
+     * @param jwt   the token verified by the decoder of its issuer
+     */
+    public void put(String token, Jwt jwt) {
+        Instant now = clock.instant();
+        if (!isLive(jwt, now)) {
+            return;
+        }
+
+        if (verifiedTokens.size() >= maxSize) {
+            purgeExpired(now);
+        }
+        if (verifiedTokens.size() < maxSize) {
+            verifiedTokens.put(hash(token), jwt);
+        }
+    }
+
+    public int getSize() {
+        return verifiedTokens.size();
+    }
+
+    private static boolean isLive(Jwt jwt, Instant now) {
+        Instant expiresAt = jwt.getExpiresAt();
+        return expiresAt != null && now.isBefore(expiresAt);
+    }
+
+    private void purgeExpired(Instant now) {
+        // one thread is enough, the others skip caching until it is done
+        if (purging.compareAndSet(false, true)) {
+            try {
+                verifiedTokens.values().removeIf(jwt -> !isLive(jwt, now));
+            } finally {
+                purging.set(false);
+            }
+        }
+    }
+
+    private static ByteBuffer hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
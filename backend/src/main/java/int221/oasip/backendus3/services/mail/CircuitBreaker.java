@@ -0,0 +1,49 @@
+package int221.oasip.backendus3.services.mail;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Stop calling a failing dependency for a while after too many consecutive failures.
+ * <p>After the open duration, calls are allowed again one at a time (half open)
+ * until one succeeds, a failure in that state opens the breaker again right away.
+ */
+public class CircuitBreaker {
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Clock clock;
+    private int consecutiveFailures = 0;
+    private Instant openUntil = null;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration, Clock clock) {
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.clock = clock;
+    }
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public synchronized State getState() {
+        if (openUntil == null) {
+            return State.CLOSED;
+        }
+        return clock.instant().isBefore(openUntil) ? State.OPEN : State.HALF_OPEN;
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        openUntil = null;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (openUntil != null || consecutiveFailures >= failureThreshold) {
+            openUntil = clock.instant().plus(openDuration);
+        }
+    }
+}
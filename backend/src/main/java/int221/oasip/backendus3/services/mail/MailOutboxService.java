@@ -0,0 +1,61 @@
+package int221.oasip.backendus3.services.mail;
+
+import int221.oasip.backendus3.entities.MailOutbox;
+import int221.oasip.backendus3.repository.MailOutboxRepository;
+import int221.oasip.backendus3.services.MailService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class MailOutboxService {
+    private final MailOutboxRepository repository;
+    private final MailService mailService;
+
+    /**
+     * Queue the mail in the current transaction, it is sent by {@link MailOutboxWorker} only if the transaction commits
+     *
+     * @param mail mail to be sent
+     */
+    @Transactional
+    public void enqueue(OutgoingMail mail) {
+        if (mailService.isDisabled()) {
+            return;
+        }
+
+        repository.save(toOutbox(mail, Instant.now()));
+    }
+
+    /**
+     * Same as {@link #enqueue} for many mails
+     *
+     * @param mails mails to be sent
+     */
+    @Transactional
+    public void enqueueAll(List<OutgoingMail> mails) {
+        if (mailService.isDisabled() || mails.isEmpty()) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        List<MailOutbox> outboxes = new ArrayList<>(mails.size());
+        for (OutgoingMail mail : mails) {
+            outboxes.add(toOutbox(mail, now));
+        }
+        repository.saveAll(outboxes);
+    }
+
+    private static MailOutbox toOutbox(OutgoingMail mail, Instant nextAttemptAt) {
+        MailOutbox outbox = new MailOutbox();
+        outbox.setRecipient(mail.getRecipient());
+        outbox.setSubject(mail.getSubject());
+        outbox.setBody(mail.getHtmlBody());
+        outbox.setNextAttemptAt(nextAttemptAt);
+        return outbox;
+    }
+}
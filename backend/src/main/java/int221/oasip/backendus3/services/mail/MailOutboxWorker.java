@@ -0,0 +1,216 @@
+package int221.oasip.backendus3.services.mail;
+
+import int221.oasip.backendus3.configs.MailProps;
+import int221.oasip.backendus3.entities.MailOutbox;
+import int221.oasip.backendus3.repository.MailOutboxRepository;
+import int221.oasip.backendus3.services.MailService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Send the mails in the outbox in the background.
+ * <p>One poller claims the due mails in batches, only as many batches as there are idle senders,
+ * and each sender sends a whole batch through one SMTP connection.
+ * A mail that fails is retried with exponential backoff until {@link MailProps.Outbox#getMaxAttempts()},
+ * and the poller stops claiming while the SMTP server is unreachable.
+ * The sent and failed mails are deleted after {@link MailProps.Outbox#getRetention()}.
+ */
+@Component
+@Slf4j
+public class MailOutboxWorker {
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final MailOutboxRepository repository;
+    private final MailService mailService;
+    private final MailProps.Outbox props;
+    private final CircuitBreaker circuitBreaker;
+    private final Clock clock;
+    private ScheduledExecutorService poller;
+    private ThreadPoolExecutor senders;
+
+    @Autowired
+    public MailOutboxWorker(MailOutboxRepository repository, MailService mailService, MailProps mailProps) {
+        this(repository, mailService, mailProps, Clock.systemUTC());
+    }
+
+    MailOutboxWorker(MailOutboxRepository repository, MailService mailService, MailProps mailProps, Clock clock) {
+        this.repository = repository;
+        this.mailService = mailService;
+        this.props = mailProps.getOutbox();
+        this.clock = clock;
+        this.circuitBreaker = new CircuitBreaker(props.getCircuitBreakerThreshold(), props.getCircuitBreakerOpenDuration(), clock);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (mailService.isDisabled()) {
+            return;
+        }
+
+        senders = new ThreadPoolExecutor(props.getWorkers(), props.getWorkers(), 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), namedThreadFactory("mail-sender-"));
+        poller = Executors.newSingleThreadScheduledExecutor(namedThreadFactory("mail-outbox-poller-"));
+        long interval = props.getPollInterval().toMillis();
+        poller.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+        long purgeInterval = props.getPurgeInterval().toMillis();
+        poller.scheduleWithFixedDelay(this::purgeCompletedMails, purgeInterval, purgeInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (poller == null) {
+            return;
+        }
+
+        poller.shutdown();
+        senders.shutdown();
+        // claimed mails that are not sent in time are sent again after their lease expires
+        senders.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    void poll() {
+        try {
+            int idleSenders = props.getWorkers() - senders.getActiveCount() - senders.getQueue().size();
+            for (List<MailOutbox> batch : claimBatches(idleSenders)) {
+                senders.execute(() -> send(batch));
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to poll the mail outbox", e);
+        }
+    }
+
+    /**
+     * @param idleSenders number of senders that can take a batch now
+     * @return the claimed batches, none while the circuit breaker is open and at most one while it is half-open
+     */
+    List<List<MailOutbox>> claimBatches(int idleSenders) {
+        CircuitBreaker.State state = circuitBreaker.getState();
+        if (state == CircuitBreaker.State.OPEN) {
+            return List.of();
+        }
+
+        int batches = state == CircuitBreaker.State.HALF_OPEN ? Math.min(idleSenders, 1) : idleSenders;
+        if (batches <= 0) {
+            return List.of();
+        }
+        return partition(claimDueMails(batches * props.getBatchSize()), props.getBatchSize());
+    }
+
+    private List<MailOutbox> claimDueMails(int limit) {
+        Instant now = clock.instant();
+        Instant leaseUntil = now.plus(props.getLease());
+        List<MailOutbox> dueMails = repository.findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(
+                MailOutbox.Status.PENDING, now, PageRequest.of(0, limit));
+
+        List<MailOutbox> claimed = new ArrayList<>(dueMails.size());
+        for (MailOutbox mail : dueMails) {
+            if (repository.claim(mail.getId(), MailOutbox.Status.PENDING, now, leaseUntil) == 1) {
+                mail.setAttempts(mail.getAttempts() + 1);
+                claimed.add(mail);
+            }
+        }
+        return claimed;
+    }
+
+    void send(List<MailOutbox> batch) {
+        List<OutgoingMail> mails = batch.stream()
+                .map(mail -> new OutgoingMail(mail.getRecipient(), mail.getSubject(), mail.getBody()))
+                .collect(Collectors.toList());
+
+        List<MessagingException> failures;
+        Exception connectionFailure = null;
+        try {
+            failures = mailService.send(mails);
+            circuitBreaker.recordSuccess();
+        } catch (PartialSendException e) {
+            failures = e.getFailures();
+            connectionFailure = e;
+        } catch (MessagingException | RuntimeException e) {
+            failures = List.of();
+            connectionFailure = e;
+        }
+        if (connectionFailure != null) {
+            log.warn("Failed to send {} of {} mails: {}", batch.size() - failures.size(), batch.size(), connectionFailure.getMessage());
+            circuitBreaker.recordFailure();
+        }
+
+        // the mails after a lost connection have no result, they are retried
+        for (int i = 0; i < batch.size(); i++) {
+            MailOutbox mail = batch.get(i);
+            if (i >= failures.size()) {
+                retryOrFail(mail, connectionFailure);
+            } else if (failures.get(i) == null) {
+                repository.updateStatus(mail.getId(), MailOutbox.Status.SENT, clock.instant(), null);
+            } else {
+                retryOrFail(mail, failures.get(i));
+            }
+        }
+    }
+
+    void purgeCompletedMails() {
+        try {
+            int deleted = repository.deleteCompleted(
+                    List.of(MailOutbox.Status.SENT, MailOutbox.Status.FAILED), clock.instant().minus(props.getRetention()));
+            if (deleted > 0) {
+                log.info("Deleted {} sent and failed mails from the outbox", deleted);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to purge the mail outbox", e);
+        }
+    }
+
+    private void retryOrFail(MailOutbox mail, Exception cause) {
+        String error = truncate(String.valueOf(cause.getMessage()));
+        if (mail.getAttempts() >= props.getMaxAttempts()) {
+            log.error("Giving up sending mail {} after {} attempts: {}", mail.getId(), mail.getAttempts(), error);
+            repository.updateStatus(mail.getId(), MailOutbox.Status.FAILED, clock.instant(), error);
+        } else {
+            repository.updateStatus(mail.getId(), MailOutbox.Status.PENDING, clock.instant().plus(getBackoff(mail.getAttempts())), error);
+        }
+    }
+
+    /**
+     * @param attempts number of attempts made so far, at least 1
+     * @return delay before the next attempt, doubled after each attempt up to {@link MailProps.Outbox#getMaxBackoff()}
+     */
+    Duration getBackoff(int attempts) {
+        Duration backoff = props.getInitialBackoff().multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(props.getMaxBackoff()) > 0 ? props.getMaxBackoff() : backoff;
+    }
+
+    private static String truncate(String message) {
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+
+    private static <T> List<List<T>> partition(List<T> list, int size) {
+        List<List<T>> partitions = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += size) {
+            partitions.add(list.subList(i, Math.min(i + size, list.size())));
+        }
+        return partitions;
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+        return runnable -> {
+            Thread thread = defaultFactory.newThread(runnable);
+            thread.setName(prefix + thread.getName());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package int221.oasip.backendus3.services.mail;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.web.util.HtmlUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTML template with {@code {{name}}} placeholders, parsed once so rendering only appends the parts.
+ * Every value is HTML escaped, a missing value renders as an empty string.
+ */
+public class MailTemplate {
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    /**
+     * Literal text at even indexes and placeholder names at odd indexes
+     */
+    private final String[] parts;
+    private final int literalLength;
+
+    public MailTemplate(String template) {
+        List<String> parts = new ArrayList<>();
+        int length = 0;
+        int from = 0;
+        int open;
+        while ((open = template.indexOf(OPEN, from)) >= 0) {
+            int close = template.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder at " + open);
+            }
+            parts.add(template.substring(from, open));
+            parts.add(template.substring(open + OPEN.length(), close).trim());
+            length += open - from;
+            from = close + CLOSE.length();
+        }
+        parts.add(template.substring(from));
+        length += template.length() - from;
+
+        this.parts = parts.toArray(new String[0]);
+        this.literalLength = length;
+    }
+
+    public static MailTemplate fromClasspath(String path) {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            return new MailTemplate(new String(in.readAllBytes(), StandardCharsets.UTF_8).strip());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load mail template " + path, e);
+        }
+    }
+
+    public String render(Map<String, String> values) {
+        StringBuilder builder = new StringBuilder(literalLength + 64 * (parts.length / 2));
+        for (int i = 0; i < parts.length; i++) {
+            if (i % 2 == 0) {
+                builder.append(parts[i]);
+            } else {
+                String value = values.get(parts[i]);
+                if (value != null) {
+                    builder.append(HtmlUtils.htmlEscape(value, StandardCharsets.UTF_8.name()));
+                }
+            }
+        }
+        return builder.toString();
+    }
+}
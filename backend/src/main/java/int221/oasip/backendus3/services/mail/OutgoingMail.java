@@ -0,0 +1,12 @@
+package int221.oasip.backendus3.services.mail;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public class OutgoingMail {
+    private final String recipient;
+    private final String subject;
+    private final String htmlBody;
+}
@@ -0,0 +1,23 @@
+package int221.oasip.backendus3.services.mail;
+
+import lombok.Getter;
+
+import javax.mail.MessagingException;
+import java.util.List;
+
+/**
+ * The SMTP connection was lost while sending a batch. The mails before the failure were handed to the server,
+ * the mail that failed and the ones after it may not have been.
+ */
+@Getter
+public class PartialSendException extends MessagingException {
+    /**
+     * The result of each mail before the failure, in the order of the batch, null for the mails that are sent
+     */
+    private final List<MessagingException> failures;
+
+    public PartialSendException(List<MessagingException> failures, Exception cause) {
+        super("Connection lost after " + failures.size() + " mails", cause);
+        this.failures = failures;
+    }
+}
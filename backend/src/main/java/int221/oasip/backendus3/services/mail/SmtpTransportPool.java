@@ -0,0 +1,114 @@
+package int221.oasip.backendus3.services.mail;
+
+import javax.mail.*;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small pool of connected SMTP transports, so many messages are sent per connection
+ * instead of one handshake per message.
+ * <p>A transport is checked with a NOOP before it is reused, and reconnected after
+ * {@code maxMessagesPerConnection} messages.
+ */
+public class SmtpTransportPool implements AutoCloseable {
+    private final Session session;
+    private final int maxMessagesPerConnection;
+    private final Duration borrowTimeout;
+    private final Semaphore permits;
+    private final BlockingQueue<PooledTransport> idle = new LinkedBlockingQueue<>();
+    private volatile boolean closed = false;
+
+    public SmtpTransportPool(Session session, int size, int maxMessagesPerConnection, Duration borrowTimeout) {
+        this.session = session;
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.borrowTimeout = borrowTimeout;
+        this.permits = new Semaphore(size, true);
+    }
+
+    /**
+     * Take a connected transport, it must be given back with {@link #release(PooledTransport, boolean)}
+     *
+     * @throws MessagingException if no transport is available in time or it cannot connect
+     */
+    public PooledTransport borrow() throws MessagingException {
+        try {
+            if (!permits.tryAcquire(borrowTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new MessagingException("No SMTP connection available");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for an SMTP connection", e);
+        }
+
+        try {
+            PooledTransport transport;
+            while ((transport = idle.poll()) != null) {
+                if (transport.transport.isConnected()) {
+                    return transport;
+                }
+                closeQuietly(transport);
+            }
+
+            transport = new PooledTransport(session.getTransport("smtp"));
+            transport.transport.connect();
+            return transport;
+        } catch (MessagingException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @param transport transport from {@link #borrow()}
+     * @param reusable  false if the connection may be broken, it is closed instead of being kept
+     */
+    public void release(PooledTransport transport, boolean reusable) {
+        try {
+            if (reusable && !closed && transport.sentMessages < maxMessagesPerConnection) {
+                idle.offer(transport);
+            } else {
+                closeQuietly(transport);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledTransport transport;
+        while ((transport = idle.poll()) != null) {
+            closeQuietly(transport);
+        }
+    }
+
+    private static void closeQuietly(PooledTransport transport) {
+        try {
+            transport.transport.close();
+        } catch (MessagingException e) {
+            // the connection is dropped anyway
+        }
+    }
+
+    public static class PooledTransport {
+        private final Transport transport;
+        private int sentMessages = 0;
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+
+        public void send(Message message) throws MessagingException {
+            sentMessages++;
+            transport.sendMessage(message, message.getAllRecipients());
+        }
+
+        public boolean isConnected() {
+            return transport.isConnected();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package int221.oasip.backendus3.services.metrics;
+
+import int221.oasip.backendus3.services.EventService.EventTimeType;
+import int221.oasip.backendus3.services.auth.AuthStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Meters of {@link int221.oasip.backendus3.services.EventService}, registered once so recording does not look them up.
+ * <p>Lists are tagged with the {@link EventTimeType} ({@value #ALL_TYPES} if none) and the highest role of the user.
+ */
+@Component
+@Getter
+public class EventMetrics {
+    public static final String ALL_TYPES = "all";
+    private static final String[] ROLES = {"admin", "lecturer", "student", "guest"};
+
+    private final Timer createTimer;
+    private final Timer updateTimer;
+    private final Timer deleteTimer;
+    private final Timer importTimer;
+    private final Counter createOverlapRejections;
+    private final Counter updateOverlapRejections;
+    private final Counter importOverlapRejections;
+    private final Map<String, Map<String, Timer>> listTimers = new HashMap<>();
+
+    public EventMetrics(MeterRegistry registry) {
+        createTimer = operationTimer(registry, "create");
+        updateTimer = operationTimer(registry, "update");
+        deleteTimer = operationTimer(registry, "delete");
+        importTimer = operationTimer(registry, "import");
+        createOverlapRejections = overlapRejections(registry, "create");
+        updateOverlapRejections = overlapRejections(registry, "update");
+        importOverlapRejections = overlapRejections(registry, "import");
+
+        listTimers.put(ALL_TYPES, listTimers(registry, ALL_TYPES));
+        for (EventTimeType type : EventTimeType.values()) {
+            String name = getTypeName(type);
+            listTimers.put(name, listTimers(registry, name));
+        }
+    }
+
+    public static String getTypeName(@Nullable EventTimeType type) {
+        return type == null ? ALL_TYPES : type.name().toLowerCase(Locale.ROOT);
+    }
+
+    public static String getRoleName(AuthStatus authStatus) {
+        if (authStatus.isAdmin) {
+            return ROLES[0];
+        } else if (authStatus.isLecturer) {
+            return ROLES[1];
+        } else if (authStatus.isStudent) {
+            return ROLES[2];
+        }
+        return ROLES[3];
+    }
+
+    /**
+     * @param type name from {@link #getTypeName}
+     * @param role name from {@link #getRoleName}
+     */
+    public Timer getListTimer(String type, String role) {
+        return listTimers.get(type).get(role);
+    }
+
+    private static Timer operationTimer(MeterRegistry registry, String operation) {
+        return Timer.builder("oasip.events")
+                .description("Time to create, update or delete an event, or to import a file of events")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Counter overlapRejections(MeterRegistry registry, String operation) {
+        return Counter.builder("oasip.events.overlap.rejections")
+                .description("Events rejected because they overlap with another event of the category")
+                .tag("operation", operation)
+                .register(registry);
+    }
+
+    private static Map<String, Timer> listTimers(MeterRegistry registry, String type) {
+        Map<String, Timer> timers = new HashMap<>();
+        for (String role : ROLES) {
+            timers.put(role, Timer.builder("oasip.events.list")
+                    .description("Time to list events, once per page when paginated")
+                    .tag("type", type)
+                    .tag("role", role)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        return timers;
+    }
+}
@@ -0,0 +1,95 @@
+package int221.oasip.backendus3.services.password;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Pick the Argon2 costs for a target hashing time on this machine.
+ * <p>Memory is raised first, since it is what makes Argon2 expensive to attack,
+ * then iterations are added while the estimated time stays within the target.
+ * The lower bounds are kept even if they are slower than the target.
+ */
+public class Argon2Calibrator {
+    public static final int SALT_LENGTH = 16;
+    public static final int HASH_LENGTH = 32;
+    public static final int PARALLELISM = 1;
+    private static final int SAMPLES = 3;
+
+    private final Duration targetLatency;
+    private final int minMemory;
+    private final int maxMemory;
+    private final int minIterations;
+    private final int maxIterations;
+
+    /**
+     * @param minMemory     lower bound of the memory in KiB
+     * @param maxMemory     upper bound of the memory in KiB
+     * @param minIterations lower bound of the iterations
+     * @param maxIterations upper bound of the iterations
+     */
+    public Argon2Calibrator(Duration targetLatency, int minMemory, int maxMemory, int minIterations, int maxIterations) {
+        this.targetLatency = targetLatency;
+        this.minMemory = minMemory;
+        this.maxMemory = Math.max(minMemory, maxMemory);
+        this.minIterations = minIterations;
+        this.maxIterations = Math.max(minIterations, maxIterations);
+    }
+
+    public Costs calibrate() {
+        long target = targetLatency.toNanos();
+        int memory = minMemory;
+        int iterations = minIterations;
+        long elapsed = measure(memory, iterations);
+
+        // the time grows about linearly with the memory and with the iterations
+        while (memory * 2L <= maxMemory && elapsed * 2 <= target) {
+            memory *= 2;
+            elapsed = measure(memory, iterations);
+        }
+        long perIteration = elapsed / iterations;
+        while (iterations < maxIterations && perIteration * (iterations + 1) <= target) {
+            iterations++;
+        }
+
+        return new Costs(memory, iterations, Duration.ofNanos(perIteration * iterations));
+    }
+
+    /**
+     * @return median time of a hash in nanoseconds, after a warm up
+     */
+    private static long measure(int memory, int iterations) {
+        Argon2PasswordEncoder encoder = createEncoder(memory, iterations);
+        encoder.encode("calibration");
+
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode("calibration");
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[SAMPLES / 2];
+    }
+
+    public static Argon2PasswordEncoder createEncoder(int memory, int iterations) {
+        return new Argon2PasswordEncoder(SALT_LENGTH, HASH_LENGTH, PARALLELISM, memory, iterations);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Costs {
+        /**
+         * Memory in KiB
+         */
+        private final int memory;
+        private final int iterations;
+        /**
+         * Estimated time of a hash with these costs
+         */
+        private final Duration estimatedLatency;
+    }
+}
@@ -0,0 +1,126 @@
+package int221.oasip.backendus3.services.password;
+
+import int221.oasip.backendus3.exceptions.ServiceBusyException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Run the {@code delegate} on a fixed number of threads, so a burst of logins uses at most that many cores
+ * and leaves the request threads of other endpoints alone.
+ * <p>Hashes wait in a bounded queue. A hash that does not fit in the queue, or is not done within the timeout,
+ * fails with a {@link ServiceBusyException}.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+    private static final String BUSY_MESSAGE = "Too many passwords are being checked, please try again later";
+    private static final Pattern ARGON2_COSTS = Pattern.compile("^\\$argon2(?:id|i|d)\\$v=\\d+\\$m=(\\d+),t=(\\d+),p=\\d+\\$");
+
+    private final PasswordEncoder delegate;
+    private final int memory;
+    private final int iterations;
+    private final Duration timeout;
+    private final Duration retryAfter;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param delegate   Argon2 encoder with the current costs
+     * @param memory     current memory in KiB, older hashes with less are upgraded
+     * @param iterations current iterations, older hashes with fewer are upgraded
+     * @param threads    number of hashing threads
+     * @param queueSize  number of hashes waiting for a thread
+     * @param timeout    maximum time to wait for a hash, including the time in the queue
+     * @param retryAfter time the client is asked to wait when a hash is rejected
+     */
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int memory, int iterations,
+                                  int threads, int queueSize, Duration timeout, Duration retryAfter) {
+        this.delegate = delegate;
+        this.memory = memory;
+        this.iterations = iterations;
+        this.timeout = timeout;
+        this.retryAfter = retryAfter;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * @return true if the hash is Argon2 with less memory or fewer iterations than the current costs
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+
+        Matcher matcher = ARGON2_COSTS.matcher(encodedPassword);
+        if (!matcher.find()) {
+            return false;
+        }
+        try {
+            return Integer.parseInt(matcher.group(1)) < memory || Integer.parseInt(matcher.group(2)) < iterations;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new ServiceBusyException(BUSY_MESSAGE, retryAfter);
+        }
+
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new ServiceBusyException(BUSY_MESSAGE, retryAfter);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the password hash", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package int221.oasip.backendus3.services.ratelimit;
+
+import int221.oasip.backendus3.configs.RateLimitProps;
+import int221.oasip.backendus3.exceptions.TooManyRequestsException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Limit the requests that check a password, by client IP and by account, before any hashing starts.
+ * <p>The client IP is the address forwarded by the reverse proxy, see {@code server.forward-headers-strategy}.
+ */
+@Component
+public class LoginRateLimiter {
+    private final boolean enabled;
+    private final TokenBucketRateLimiter byIp;
+    private final TokenBucketRateLimiter byAccount;
+
+    public LoginRateLimiter(RateLimitProps props) {
+        this.enabled = props.isEnabled();
+        this.byIp = new TokenBucketRateLimiter(props.getIp().getCapacity(), props.getIp().getRefillInterval(), props.getMaxBuckets());
+        this.byAccount = new TokenBucketRateLimiter(props.getAccount().getCapacity(), props.getAccount().getRefillInterval(), props.getMaxBuckets());
+    }
+
+    /**
+     * Take a token for the client IP and one for the account
+     *
+     * @param request the request checking a password
+     * @param email   email of the account, not limited by account if null
+     * @throws TooManyRequestsException if either the client or the account has no token left
+     */
+    public void acquire(HttpServletRequest request, @Nullable String email) {
+        if (!enabled) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        long waitNanos = byIp.tryAcquire(request.getRemoteAddr(), now);
+        if (waitNanos > 0) {
+            throw tooManyRequests(waitNanos);
+        }
+
+        if (email != null) {
+            waitNanos = byAccount.tryAcquire(email.strip().toLowerCase(Locale.ROOT), now);
+            if (waitNanos > 0) {
+                throw tooManyRequests(waitNanos);
+            }
+        }
+    }
+
+    private static TooManyRequestsException tooManyRequests(long waitNanos) {
+        return new TooManyRequestsException("Too many attempts, please try again later", Duration.ofNanos(waitNanos));
+    }
+}
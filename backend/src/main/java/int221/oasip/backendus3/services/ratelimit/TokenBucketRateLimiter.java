@@ -0,0 +1,97 @@
+package int221.oasip.backendus3.services.ratelimit;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Token buckets by key, e.g. by client IP. Each bucket holds up to {@code capacity} tokens and gains one token
+ * every {@code refillInterval}, a request takes one token.
+ * <p>Buckets are kept in lock-striped maps, each stripe forgets its least recently used bucket when it is full.
+ * A forgotten bucket starts full again, which only lets the key through sooner.
+ */
+public class TokenBucketRateLimiter {
+    private static final int STRIPES = 32;
+
+    private final int capacity;
+    private final long refillIntervalNanos;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * @param capacity       maximum number of tokens of a bucket, that is the burst allowed
+     * @param refillInterval time to gain one token
+     * @param maxBuckets     maximum number of buckets kept
+     */
+    public TokenBucketRateLimiter(int capacity, Duration refillInterval, int maxBuckets) {
+        this.capacity = capacity;
+        this.refillIntervalNanos = refillInterval.toNanos();
+        int bucketsPerStripe = Math.max(1, maxBuckets / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(bucketsPerStripe);
+        }
+    }
+
+    /**
+     * Take a token from the bucket of the key
+     *
+     * @param key     key of the bucket
+     * @param nowNanos current {@link System#nanoTime()}
+     * @return 0 if a token was taken, otherwise the nanoseconds until the bucket has a token
+     */
+    public long tryAcquire(String key, long nowNanos) {
+        Stripe stripe = stripes[Math.floorMod(key.hashCode(), STRIPES)];
+        synchronized (stripe) {
+            Bucket bucket = stripe.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(capacity, nowNanos);
+                stripe.put(key, bucket);
+            }
+            return bucket.tryTake(nowNanos);
+        }
+    }
+
+    public long tryAcquire(String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    private class Bucket {
+        private long tokens;
+        /**
+         * Time the last token was gained, or the time the bucket was full
+         */
+        private long refilledAt;
+
+        Bucket(long tokens, long now) {
+            this.tokens = tokens;
+            this.refilledAt = now;
+        }
+
+        long tryTake(long now) {
+            long gained = (now - refilledAt) / refillIntervalNanos;
+            if (gained > 0) {
+                tokens = Math.min(capacity, tokens + gained);
+                refilledAt = tokens == capacity ? now : refilledAt + gained * refillIntervalNanos;
+            }
+
+            if (tokens > 0) {
+                tokens--;
+                return 0;
+            }
+            return refilledAt + refillIntervalNanos - now;
+        }
+    }
+
+    private static class Stripe extends LinkedHashMap<String, Bucket> {
+        private final int maxSize;
+
+        Stripe(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package int221.oasip.backendus3.services;
+
+import int221.oasip.backendus3.entities.File;
+import int221.oasip.backendus3.repository.FileRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The blob store on a temporary directory, the rows of the {@code file} table are counted by {@link #references}
+ */
+class FileServiceTest {
+    @TempDir
+    Path uploadPath;
+    private FileRepository fileRepository;
+    private FileService fileService;
+    private final Map<String, Long> references = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        fileRepository = mock(FileRepository.class);
+        when(fileRepository.countBySha256(anyString())).thenAnswer(invocation -> references.getOrDefault(invocation.getArgument(0, String.class), 0L));
+        fileService = new FileService(fileRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(fileService, "uploadPathProp", uploadPath.toString());
+        ReflectionTestUtils.setField(fileService, "blobGracePeriod", Duration.ofHours(1));
+        ReflectionTestUtils.setField(fileService, "blobSweepInterval", Duration.ofHours(1));
+    }
+
+    @Test
+    void reuseBlobForDuplicateUpload() throws IOException {
+        File first = fileService.uploadFile("first", newUpload("notes.txt", "same content"));
+        File second = fileService.uploadFile("second", newUpload("copy.txt", "same content"));
+
+        assertEquals(first.getSha256(), second.getSha256());
+        assertEquals("copy.txt", second.getName());
+        assertEquals(List.of(getBlobPath(first.getSha256())), listBlobFiles());
+        assertEquals("same content", Files.readString(getBlobPath(first.getSha256())));
+    }
+
+    @Test
+    void keepBlobReferencedByAnotherRow() throws IOException {
+        ReflectionTestUtils.setField(fileService, "blobGracePeriod", Duration.ZERO);
+        File first = fileService.uploadFile("first", newUpload("notes.txt", "same content"));
+        File second = fileService.uploadFile("second", newUpload("copy.txt", "same content"));
+        Path blobPath = getBlobPath(first.getSha256());
+
+        references.put(first.getSha256(), 1L);
+        fileService.deleteFile(first);
+        assertTrue(Files.exists(blobPath));
+
+        references.put(first.getSha256(), 0L);
+        fileService.deleteFile(second);
+        assertFalse(Files.exists(blobPath));
+    }
+
+    @Test
+    void sweepReleasedBlobAfterGracePeriod() throws IOException {
+        // the row of the upload was rolled back, it never references the blob
+        File file = fileService.uploadFile("first", newUpload("notes.txt", "content"));
+        Path blobPath = getBlobPath(file.getSha256());
+        fileService.deleteFile(file);
+        assertTrue(Files.exists(blobPath));
+
+        Path abandonedTemp = Files.createFile(uploadPath.resolve("blobs").resolve("tmp").resolve("abandoned"));
+        FileTime expired = FileTime.from(Instant.now().minus(Duration.ofHours(2)));
+        Files.setLastModifiedTime(blobPath, expired);
+        Files.setLastModifiedTime(abandonedTemp, expired);
+        fileService.sweepBlobs();
+
+        assertFalse(Files.exists(blobPath));
+        assertFalse(Files.exists(abandonedTemp));
+    }
+
+    @Test
+    void serveBlobWithoutLastModified() throws IOException {
+        File file = fileService.uploadFile("first", newUpload("notes.txt", "content"));
+        when(fileRepository.findFirstByBucketIdAndName("first", "notes.txt")).thenReturn(Optional.of(file));
+
+        FileService.StoredFile storedFile = fileService.getStoredFile("first", "notes.txt").orElseThrow();
+
+        assertEquals(getBlobPath(file.getSha256()), storedFile.getPath());
+        assertEquals("\"" + file.getSha256() + "\"", storedFile.getETag());
+        assertEquals(-1, storedFile.getLastModified());
+    }
+
+    private static MockMultipartFile newUpload(String name, String content) {
+        return new MockMultipartFile("file", name, "text/plain", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path getBlobPath(String sha256) {
+        return uploadPath.resolve("blobs").resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4)).resolve(sha256);
+    }
+
+    private List<Path> listBlobFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(uploadPath.resolve("blobs"))) {
+            return paths.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package int221.oasip.backendus3.services;
+
+import int221.oasip.backendus3.configs.MailProps;
+import int221.oasip.backendus3.entities.Event;
+import int221.oasip.backendus3.entities.EventCategory;
+import int221.oasip.backendus3.services.mail.FakeSmtpServer;
+import int221.oasip.backendus3.services.mail.OutgoingMail;
+import int221.oasip.backendus3.services.mail.PartialSendException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.mail.MessagingException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailServiceTest {
+    private FakeSmtpServer smtpServer;
+    private MailService mailService;
+
+    @BeforeEach
+    void setUp() throws IOException, MessagingException {
+        smtpServer = new FakeSmtpServer();
+        mailService = new MailService(localMailProps(smtpServer.getPort()), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mailService.close();
+        smtpServer.close();
+    }
+
+    @Test
+    void sendBatchThroughOneConnection() throws MessagingException {
+        List<MessagingException> failures = mailService.send(Arrays.asList(
+                new OutgoingMail("first@example.com", "Your booking is complete.", "<br>Booking Name: first"),
+                new OutgoingMail("second@example.com", "Your booking is complete.", "<br>Booking Name: second")
+        ));
+
+        assertEquals(Arrays.asList(null, null), failures);
+        assertEquals(1, smtpServer.getConnections());
+        assertEquals(Arrays.asList("first@example.com", "second@example.com"), smtpServer.getRecipients());
+        assertTrue(smtpServer.getMessages().get(1).contains("Booking Name: second"));
+    }
+
+    @Test
+    void reuseConnectionAcrossBatches() throws MessagingException {
+        for (int i = 0; i < 3; i++) {
+            mailService.send(List.of(new OutgoingMail("user" + i + "@example.com", "Your booking is complete.", "body")));
+        }
+
+        assertEquals(3, smtpServer.getMessages().size());
+        assertEquals(1, smtpServer.getConnections());
+    }
+
+    @Test
+    void failWholeBatchWhenServerIsUnreachable() throws IOException, MessagingException {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        MailService unreachableMailService = new MailService(localMailProps(closedPort), new SimpleMeterRegistry());
+
+        assertThrows(MessagingException.class, () -> unreachableMailService.send(List.of(
+                new OutgoingMail("first@example.com", "Your booking is complete.", "body")
+        )));
+    }
+
+    @Test
+    void reportSentMailsWhenConnectionIsLost() {
+        smtpServer.dropConnectionAfter(1);
+
+        PartialSendException e = assertThrows(PartialSendException.class, () -> mailService.send(Arrays.asList(
+                new OutgoingMail("first@example.com", "Your booking is complete.", "body"),
+                new OutgoingMail("second@example.com", "Your booking is complete.", "body"),
+                new OutgoingMail("third@example.com", "Your booking is complete.", "body")
+        )));
+
+        assertEquals(Arrays.asList((MessagingException) null), e.getFailures());
+        assertEquals(List.of("first@example.com"), smtpServer.getRecipients());
+    }
+
+    @Test
+    void escapeValuesInBookingConfirmation() {
+        Event event = new Event();
+        event.setEventCategory(new EventCategory(), 30);
+        event.setBookingName("<b>Somchai</b>");
+        event.setBookingEmail("somchai@example.com");
+        event.setEventStartTime(Instant.parse("2022-05-23T06:30:00Z"));
+
+        OutgoingMail mail = mailService.createBookingConfirmation(event, "Project Management Clinic");
+
+        assertEquals("somchai@example.com", mail.getRecipient());
+        assertTrue(mail.getHtmlBody().contains("Booking Name: &lt;b&gt;Somchai&lt;/b&gt;"));
+        assertTrue(mail.getHtmlBody().contains("When: Mon May 23, 2022 13:30 - 14:00  (ICT)"));
+        assertTrue(mail.getHtmlBody().endsWith("Event Notes: "));
+    }
+
+    private static MailProps localMailProps(int port) {
+        MailProps props = new MailProps();
+        props.setHost("localhost");
+        props.setPort(port);
+        props.setAuth(false);
+        props.setStarttls(false);
+        return props;
+    }
+}
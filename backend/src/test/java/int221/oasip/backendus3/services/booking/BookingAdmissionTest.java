@@ -0,0 +1,172 @@
+package int221.oasip.backendus3.services.booking;
+
+import int221.oasip.backendus3.configs.BookingAdmissionProps;
+import int221.oasip.backendus3.exceptions.ServiceBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookingAdmissionTest {
+    private static final int CATEGORIES = 4;
+    private static final int SLOTS = 50;
+
+    private final CountingTransactionManager transactionManager = new CountingTransactionManager();
+    private final ExecutorService callers = Executors.newFixedThreadPool(16);
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void neverAdmitTwoBookingsOfOneSlot() throws Exception {
+        BookingAdmission admission = createAdmission(Duration.ofSeconds(30));
+        List<List<Integer>> bookedSlots = new ArrayList<>();
+        for (int i = 0; i < CATEGORIES; i++) {
+            // not thread safe on purpose, only the admission protects it
+            bookedSlots.add(new ArrayList<>());
+        }
+        AtomicInteger created = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int caller = 0; caller < 16; caller++) {
+            futures.add(callers.submit(() -> {
+                Random random = new Random();
+                for (int i = 0; i < 500; i++) {
+                    int categoryId = random.nextInt(CATEGORIES);
+                    int slot = random.nextInt(SLOTS);
+                    boolean booked = admission.admit(categoryId, () -> {
+                        List<Integer> slots = bookedSlots.get(categoryId);
+                        // check then act, like the overlap check then the insert
+                        if (slots.contains(slot)) {
+                            return false;
+                        }
+                        Thread.yield();
+                        slots.add(slot);
+                        return true;
+                    });
+                    if (booked) {
+                        created.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+
+        int total = 0;
+        for (List<Integer> slots : bookedSlots) {
+            assertEquals(slots.size(), new HashSet<>(slots).size());
+            total += slots.size();
+        }
+        assertEquals(created.get(), total);
+        assertEquals(16 * 500, transactionManager.commits.get());
+    }
+
+    @Test
+    void admitOtherCategoriesWhileOneIsBusy() throws Exception {
+        BookingAdmission admission = createAdmission(Duration.ofSeconds(5));
+        CountDownLatch otherCategoryAdmitted = new CountDownLatch(1);
+
+        Future<Boolean> first = callers.submit(() ->
+                admission.admit(1, () -> otherCategoryAdmitted.await(5, TimeUnit.SECONDS)));
+        callers.submit(() -> admission.admit(2, () -> {
+            otherCategoryAdmitted.countDown();
+            return null;
+        }));
+
+        assertTrue(first.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectWhenWaitingTooLong() throws Exception {
+        BookingAdmission admission = createAdmission(Duration.ofMillis(100));
+        CountDownLatch admitted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        callers.submit(() -> admission.admit(1, () -> {
+            admitted.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        }));
+        assertTrue(admitted.await(5, TimeUnit.SECONDS));
+
+        try {
+            ServiceBusyException exception = assertThrows(ServiceBusyException.class, () -> admission.admit(1, () -> null));
+            assertEquals(Duration.ofSeconds(1), exception.getRetryAfter());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void admitSeveralCategoriesWithoutDeadlock() throws Exception {
+        BookingAdmission admission = createAdmission(Duration.ofSeconds(30));
+        List<Future<?>> futures = new ArrayList<>();
+        for (int caller = 0; caller < 16; caller++) {
+            List<Integer> categoryIds = caller % 2 == 0 ? List.of(1, 2) : List.of(2, 1);
+            futures.add(callers.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    admission.admit(categoryIds, () -> null);
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        assertEquals(16 * 200, transactionManager.commits.get());
+    }
+
+    @Test
+    void rollbackAndRethrowWhenBookingFails() {
+        BookingAdmission admission = createAdmission(Duration.ofSeconds(5));
+
+        assertThrows(IOException.class, () -> admission.admit(1, () -> {
+            throw new IOException("Failed to upload file");
+        }));
+
+        assertEquals(1, transactionManager.rollbacks.get());
+        assertEquals(0, transactionManager.commits.get());
+        // the lock is released
+        assertEquals("admitted", admission.admit(1, () -> "admitted"));
+    }
+
+    private BookingAdmission createAdmission(Duration timeout) {
+        BookingAdmissionProps props = new BookingAdmissionProps();
+        // no database, only the locks of this backend
+        props.setDistributed(false);
+        props.setTimeout(timeout);
+        return new BookingAdmission(props, transactionManager, null);
+    }
+
+    private static class CountingTransactionManager implements PlatformTransactionManager {
+        private final AtomicInteger commits = new AtomicInteger();
+        private final AtomicInteger rollbacks = new AtomicInteger();
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            commits.incrementAndGet();
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            rollbacks.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package int221.oasip.backendus3.services.booking;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventImportReaderTest {
+    private final EventImportReader reader = new EventImportReader(new ObjectMapper().findAndRegisterModules());
+
+    @Test
+    void readCsvWithQuotedFields() throws IOException {
+        String csv = "eventCategoryId,bookingName,bookingEmail,eventStartTime,eventNotes\r\n" +
+                "1,Somchai Jaidee,somchai.jaid@mail.kmutt.ac.th,2030-05-23T13:30:00+07:00,\"Project, \"\"OASIP\"\"\r\nsecond line\"\r\n" +
+                "\r\n" +
+                "2,Somsri Rakdee,somsri.rakd@mail.kmutt.ac.th,2030-05-23T14:00:00+07:00,\r\n";
+
+        List<EventImportReader.Row> rows = reader.read(new StringReader(csv), EventImportReader.Format.CSV, 10);
+
+        assertEquals(2, rows.size());
+        assertEquals(2, rows.get(0).getLine());
+        assertEquals(1, rows.get(0).getRequest().getEventCategoryId());
+        assertEquals("Project, \"OASIP\"\r\nsecond line", rows.get(0).getRequest().getEventNotes());
+        assertEquals(OffsetDateTime.parse("2030-05-23T13:30:00+07:00"), rows.get(0).getRequest().getEventStartTime());
+        assertEquals(5, rows.get(1).getLine());
+        assertNull(rows.get(1).getRequest().getEventNotes());
+    }
+
+    @Test
+    void reportInvalidCsvFieldOnItsRow() throws IOException {
+        String csv = "eventCategoryId,bookingName,bookingEmail,eventStartTime\n" +
+                "one,Somchai Jaidee,somchai.jaid@mail.kmutt.ac.th,tomorrow\n";
+
+        EventImportReader.Row row = reader.read(new StringReader(csv), EventImportReader.Format.CSV, 10).get(0);
+
+        assertTrue(row.hasErrors());
+        assertEquals(List.of("eventCategoryId", "eventStartTime"), List.copyOf(row.getErrors().keySet()));
+    }
+
+    @Test
+    void rejectUnknownCsvColumn() {
+        String csv = "eventCategoryId,bookingName,bookingEmail,eventStartTime,room\n";
+
+        assertThrows(IllegalArgumentException.class,
+                () -> reader.read(new StringReader(csv), EventImportReader.Format.CSV, 10));
+    }
+
+    @Test
+    void readNdjsonLines() throws IOException {
+        String ndjson = "{\"eventCategoryId\":1,\"bookingName\":\"Somchai Jaidee\",\"bookingEmail\":\"somchai.jaid@mail.kmutt.ac.th\"," +
+                "\"eventStartTime\":\"2030-05-23T13:30:00+07:00\"}\n" +
+                "\n" +
+                "{\"eventCategoryId\":\"one\"}\n";
+
+        List<EventImportReader.Row> rows = reader.read(new StringReader(ndjson), EventImportReader.Format.NDJSON, 10);
+
+        assertEquals(2, rows.size());
+        assertFalse(rows.get(0).hasErrors());
+        assertEquals("Somchai Jaidee", rows.get(0).getRequest().getBookingName());
+        assertEquals(3, rows.get(1).getLine());
+        assertTrue(rows.get(1).getErrors().containsKey("eventCategoryId"));
+    }
+
+    @Test
+    void rejectTooManyRows() {
+        String ndjson = "{}\n{}\n{}\n";
+
+        assertThrows(IllegalArgumentException.class,
+                () -> reader.read(new StringReader(ndjson), EventImportReader.Format.NDJSON, 2));
+    }
+}
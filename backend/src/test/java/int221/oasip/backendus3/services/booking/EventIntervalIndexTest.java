@@ -0,0 +1,154 @@
+package int221.oasip.backendus3.services.booking;
+
+import int221.oasip.backendus3.configs.BookingAdmissionProps;
+import int221.oasip.backendus3.entities.Event;
+import int221.oasip.backendus3.entities.EventCategory;
+import int221.oasip.backendus3.repository.EventInterval;
+import int221.oasip.backendus3.repository.EventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EventIntervalIndexTest {
+    private static final Integer CATEGORY_ID = 1;
+    private static final Instant START = Instant.now().truncatedTo(ChronoUnit.HOURS).plus(1, ChronoUnit.DAYS);
+
+    private EventRepository repository;
+    private EventIntervalIndex index;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(EventRepository.class);
+        index = new EventIntervalIndex(repository, new BookingAdmissionProps());
+    }
+
+    @Test
+    void overlapInsideButNotAtBoundaries() {
+        // 30 minutes from START
+        index.put(new EventInterval(1, CATEGORY_ID, START, 30));
+
+        assertTrue(index.overlaps(CATEGORY_ID, START.plus(29, ChronoUnit.MINUTES), START.plus(59, ChronoUnit.MINUTES), null));
+        assertTrue(index.overlaps(CATEGORY_ID, START.minus(29, ChronoUnit.MINUTES), START.plus(1, ChronoUnit.MINUTES), null));
+        // ends when the event starts, starts when the event ends
+        assertFalse(index.overlaps(CATEGORY_ID, START.minus(30, ChronoUnit.MINUTES), START, null));
+        assertFalse(index.overlaps(CATEGORY_ID, START.plus(30, ChronoUnit.MINUTES), START.plus(60, ChronoUnit.MINUTES), null));
+        assertFalse(index.overlaps(2, START, START.plus(30, ChronoUnit.MINUTES), null));
+    }
+
+    @Test
+    void overlapLongEventStartingLongBefore() {
+        index.put(new EventInterval(1, CATEGORY_ID, START, 240));
+        index.put(new EventInterval(2, CATEGORY_ID, START.plus(60, ChronoUnit.MINUTES), 30));
+
+        assertTrue(index.overlaps(CATEGORY_ID, START.plus(210, ChronoUnit.MINUTES), START.plus(240, ChronoUnit.MINUTES), null));
+        assertFalse(index.overlaps(CATEGORY_ID, START.plus(240, ChronoUnit.MINUTES), START.plus(270, ChronoUnit.MINUTES), null));
+    }
+
+    @Test
+    void excludeEventBeingUpdated() {
+        index.put(new EventInterval(1, CATEGORY_ID, START, 30));
+
+        assertFalse(index.overlaps(CATEGORY_ID, START.plus(15, ChronoUnit.MINUTES), START.plus(45, ChronoUnit.MINUTES), 1));
+
+        index.put(new EventInterval(2, CATEGORY_ID, START.plus(30, ChronoUnit.MINUTES), 30));
+        assertTrue(index.overlaps(CATEGORY_ID, START.plus(15, ChronoUnit.MINUTES), START.plus(45, ChronoUnit.MINUTES), 1));
+    }
+
+    @Test
+    void coverOnlyFromLoadTime() {
+        when(repository.findIntervalsEndingAfter(any())).thenReturn(List.of(new EventInterval(1, CATEGORY_ID, START, 30)));
+        assertFalse(index.covers(START));
+
+        Instant beforeLoad = Instant.now();
+        index.load();
+
+        assertTrue(index.covers(START));
+        assertTrue(index.covers(Instant.now()));
+        assertFalse(index.covers(beforeLoad.minus(1, ChronoUnit.MINUTES)));
+        assertTrue(index.overlaps(CATEGORY_ID, START, START.plus(30, ChronoUnit.MINUTES), null));
+    }
+
+    @Test
+    void coverNothingWhenDistributed() {
+        BookingAdmissionProps props = new BookingAdmissionProps();
+        props.setDistributed(true);
+        EventIntervalIndex distributedIndex = new EventIntervalIndex(repository, props);
+
+        distributedIndex.load();
+        distributedIndex.put(new EventInterval(1, CATEGORY_ID, START, 30));
+
+        assertFalse(distributedIndex.covers(START));
+        assertFalse(distributedIndex.overlaps(CATEGORY_ID, START, START.plus(30, ChronoUnit.MINUTES), null));
+    }
+
+    @Test
+    void applyChangesOnlyWhenTransactionCommits() {
+        Event event = newEvent(1, START);
+        index.put(event);
+        TransactionTemplate transaction = new TransactionTemplate(new NoOpTransactionManager());
+
+        transaction.executeWithoutResult(status -> {
+            index.put(newEvent(1, START.plus(60, ChronoUnit.MINUTES)));
+            index.put(newEvent(2, START.plus(120, ChronoUnit.MINUTES)));
+            // not visible before the commit
+            assertFalse(index.overlaps(CATEGORY_ID, START.plus(60, ChronoUnit.MINUTES), START.plus(90, ChronoUnit.MINUTES), null));
+            status.setRollbackOnly();
+        });
+        transaction.executeWithoutResult(status -> {
+            index.remove(event);
+            status.setRollbackOnly();
+        });
+
+        assertTrue(index.overlaps(CATEGORY_ID, START, START.plus(30, ChronoUnit.MINUTES), null));
+        assertFalse(index.overlaps(CATEGORY_ID, START.plus(60, ChronoUnit.MINUTES), START.plus(150, ChronoUnit.MINUTES), null));
+
+        transaction.executeWithoutResult(status -> index.put(newEvent(1, START.plus(60, ChronoUnit.MINUTES))));
+
+        assertFalse(index.overlaps(CATEGORY_ID, START, START.plus(30, ChronoUnit.MINUTES), null));
+        assertTrue(index.overlaps(CATEGORY_ID, START.plus(60, ChronoUnit.MINUTES), START.plus(90, ChronoUnit.MINUTES), null));
+    }
+
+    private static Event newEvent(int id, Instant startTime) {
+        EventCategory category = new EventCategory();
+        category.setId(CATEGORY_ID);
+        category.setEventDuration(30);
+        Event event = new Event(category, "Somchai Jaidee", "somchai.jaid@mail.kmutt.ac.th", startTime, null);
+        event.setId(id);
+        return event;
+    }
+
+    /**
+     * Runs the transaction synchronizations like a real transaction manager, without a resource
+     */
+    private static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
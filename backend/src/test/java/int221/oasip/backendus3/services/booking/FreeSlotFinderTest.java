@@ -0,0 +1,45 @@
+package int221.oasip.backendus3.services.booking;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class FreeSlotFinderTest {
+    private static final long MINUTE = 60;
+
+    @Test
+    void returnDesiredTimeWhenFree() {
+        long[] slots = FreeSlotFinder.findNearest(new long[]{0}, new long[]{30 * MINUTE},
+                60 * MINUTE, 30 * MINUTE, 0, 24 * 60 * MINUTE, 1);
+
+        assertArrayEquals(new long[]{60 * MINUTE}, slots);
+    }
+
+    @Test
+    void returnNearestSlotsAroundBusyInterval() {
+        // busy 10:00-11:00, desired 10:15, 30 minute slots
+        long[] slots = FreeSlotFinder.findNearest(new long[]{600 * MINUTE}, new long[]{660 * MINUTE},
+                615 * MINUTE, 30 * MINUTE, 0, 24 * 60 * MINUTE, 3);
+
+        // 09:30 is 45 minutes away, 11:00 is 45 minutes away, 09:00 and 11:30 are 75 minutes away
+        assertArrayEquals(new long[]{540 * MINUTE, 570 * MINUTE, 660 * MINUTE}, slots);
+    }
+
+    @Test
+    void skipGapsShorterThanDuration() {
+        // busy 10:00-11:00 and 11:20-12:00, the 20 minute gap cannot fit a 30 minute slot
+        long[] slots = FreeSlotFinder.findNearest(new long[]{600 * MINUTE, 680 * MINUTE}, new long[]{660 * MINUTE, 720 * MINUTE},
+                660 * MINUTE, 30 * MINUTE, 600 * MINUTE, 780 * MINUTE, 5);
+
+        assertArrayEquals(new long[]{720 * MINUTE, 750 * MINUTE}, slots);
+    }
+
+    @Test
+    void handleNestedBusyIntervals() {
+        // busy 10:00-12:00 contains 10:30-11:00
+        long[] slots = FreeSlotFinder.findNearest(new long[]{600 * MINUTE, 630 * MINUTE}, new long[]{720 * MINUTE, 660 * MINUTE},
+                630 * MINUTE, 60 * MINUTE, 600 * MINUTE, 840 * MINUTE, 2);
+
+        assertArrayEquals(new long[]{720 * MINUTE, 780 * MINUTE}, slots);
+    }
+}
@@ -0,0 +1,101 @@
+package int221.oasip.backendus3.services.booking;
+
+import int221.oasip.backendus3.configs.BookingAdmissionProps;
+import int221.oasip.backendus3.entities.Event;
+import int221.oasip.backendus3.entities.EventCategory;
+import int221.oasip.backendus3.repository.EventCategoryRepository;
+import int221.oasip.backendus3.repository.EventRepository;
+import int221.oasip.backendus3.services.cache.CategoryOwnershipListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two backends, each with its own {@link EventIntervalIndex}, sharing one database in distributed mode
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:overlap;MODE=MySQL;NON_KEYWORDS=USER",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+// eventEndTime is generated like in 00-schema.sql, Hibernate creates it as a plain column
+@Sql(statements = {
+        "ALTER TABLE event DROP COLUMN eventEndTime",
+        "ALTER TABLE event ADD COLUMN eventEndTime TIMESTAMP GENERATED ALWAYS AS (DATEADD(MINUTE, eventDuration, eventStartTime))"
+}, config = @SqlConfig(transactionMode = SqlConfig.TransactionMode.ISOLATED))
+class OverlapCheckerTest {
+    private static final Instant START = Instant.now().truncatedTo(ChronoUnit.HOURS).plus(1, ChronoUnit.DAYS);
+    private static final Instant END = START.plus(30, ChronoUnit.MINUTES);
+
+    // entity listener of eventCategoryOwner, its cache is not part of the JPA slice
+    @MockBean
+    private CategoryOwnershipListener ownershipListener;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private EventCategoryRepository categoryRepository;
+    private EventCategory category;
+    private EventIntervalIndex indexA;
+    private EventIntervalIndex indexB;
+    private OverlapChecker backendA;
+    private OverlapChecker backendB;
+
+    @BeforeEach
+    void setUp() {
+        EventCategory newCategory = new EventCategory();
+        newCategory.setEventCategoryName("30 minutes");
+        newCategory.setEventDuration(30);
+        category = categoryRepository.saveAndFlush(newCategory);
+        BookingAdmissionProps props = new BookingAdmissionProps();
+        props.setDistributed(true);
+        indexA = new EventIntervalIndex(eventRepository, props);
+        indexB = new EventIntervalIndex(eventRepository, props);
+        backendA = new OverlapChecker(indexA, eventRepository);
+        backendB = new OverlapChecker(indexB, eventRepository);
+    }
+
+    @Test
+    void detectEventBookedByAnotherBackend() {
+        indexA.load();
+        indexB.load();
+
+        assertFalse(backendA.hasOverlap(START, END, category.getId(), null));
+        Event event = eventRepository.saveAndFlush(new Event(category, "Somchai Jaidee", "somchai.jaid@mail.kmutt.ac.th", START, null));
+        indexA.put(event);
+
+        // the index of backend B has never seen the event
+        assertTrue(backendB.hasOverlap(START.plus(15, ChronoUnit.MINUTES), END.plus(15, ChronoUnit.MINUTES), category.getId(), null));
+    }
+
+    @Test
+    void allowSlotFreedByAnotherBackend() {
+        Event event = eventRepository.saveAndFlush(new Event(category, "Somchai Jaidee", "somchai.jaid@mail.kmutt.ac.th", START, null));
+        indexA.load();
+        indexB.load();
+        assertTrue(backendB.hasOverlap(START, END, category.getId(), null));
+
+        eventRepository.delete(event);
+        eventRepository.flush();
+        indexA.remove(event);
+
+        // the index of backend B still has the deleted event
+        assertFalse(backendB.hasOverlap(START, END, category.getId(), null));
+    }
+}
@@ -0,0 +1,102 @@
+package int221.oasip.backendus3.services.jwt;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingJwtDecoderTest {
+    private static final Instant NOW = Instant.parse("2022-05-23T06:30:00Z");
+
+    private final AtomicInteger decodeCount = new AtomicInteger();
+    private final MutableClock clock = new MutableClock(NOW);
+    private final JwtDecoder delegate = token -> {
+        decodeCount.incrementAndGet();
+        if (token.startsWith("bad")) {
+            throw new BadJwtException("Invalid signature");
+        }
+        return Jwt.withTokenValue(token)
+                .header("alg", "HS256")
+                .subject("somchai.jaid@mail.kmutt.ac.th")
+                .issuedAt(NOW)
+                .expiresAt(NOW.plusSeconds(60))
+                .build();
+    };
+
+    @Test
+    void verifyTokenOnce() {
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, new VerifiedTokenCache(10, clock));
+
+        Jwt first = decoder.decode("token");
+        Jwt second = decoder.decode("token");
+
+        assertSame(first, second);
+        assertEquals(1, decodeCount.get());
+    }
+
+    @Test
+    void verifyAgainAfterExpiry() {
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, new VerifiedTokenCache(10, clock));
+        decoder.decode("token");
+
+        clock.instant = NOW.plusSeconds(60);
+        decoder.decode("token");
+
+        assertEquals(2, decodeCount.get());
+    }
+
+    @Test
+    void neverCacheRejectedToken() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10, clock);
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, cache);
+
+        assertThrows(BadJwtException.class, () -> decoder.decode("bad token"));
+        assertThrows(BadJwtException.class, () -> decoder.decode("bad token"));
+
+        assertEquals(2, decodeCount.get());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void stayWithinMaxSize() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(2, clock);
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, cache);
+
+        decoder.decode("first");
+        decoder.decode("second");
+        decoder.decode("third");
+
+        assertEquals(2, cache.getSize());
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
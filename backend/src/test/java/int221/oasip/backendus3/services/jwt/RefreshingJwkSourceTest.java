@@ -0,0 +1,115 @@
+package int221.oasip.backendus3.services.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against a local stand-in of the key set endpoint
+ */
+class RefreshingJwkSourceTest {
+    private final AtomicInteger fetchCount = new AtomicInteger();
+    private HttpServer server;
+    private volatile JWKSet publishedKeys;
+    private RefreshingJwkSource jwkSource;
+    private NimbusJwtDecoder decoder;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/keys", exchange -> {
+            fetchCount.incrementAndGet();
+            byte[] body = publishedKeys.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        URI jwkSetUri = URI.create("http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort() + "/keys");
+        jwkSource = new RefreshingJwkSource(jwkSetUri, Duration.ofHours(1), Duration.ofMinutes(1));
+
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+        decoder = new NimbusJwtDecoder(jwtProcessor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jwkSource.close();
+        server.stop(0);
+    }
+
+    @Test
+    void fetchKeysBeforeFirstToken() throws JOSEException {
+        RSAKey key = generateKey("first");
+        publishedKeys = new JWKSet(key.toPublicJWK());
+
+        jwkSource.start();
+        assertNotNull(jwkSource.getJwkSet());
+        assertEquals(1, fetchCount.get());
+
+        decoder.decode(sign(key));
+        decoder.decode(sign(key));
+        assertEquals(1, fetchCount.get());
+    }
+
+    @Test
+    void fetchAgainOnceForUnknownKey() throws JOSEException {
+        RSAKey first = generateKey("first");
+        publishedKeys = new JWKSet(first.toPublicJWK());
+        jwkSource.start();
+
+        RSAKey rotated = generateKey("rotated");
+        publishedKeys = new JWKSet(rotated.toPublicJWK());
+        decoder.decode(sign(rotated));
+        assertEquals(2, fetchCount.get());
+
+        // an unknown key right after a fetch does not fetch again
+        assertThrows(BadJwtException.class, () -> decoder.decode(sign(generateKey("unknown"))));
+        assertEquals(2, fetchCount.get());
+    }
+
+    private static RSAKey generateKey(String keyId) throws JOSEException {
+        return new RSAKeyGenerator(2048).keyID(keyId).generate();
+    }
+
+    private static String sign(RSAKey key) throws JOSEException {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer("https://login.microsoftonline.com/00000000-0000-0000-0000-000000000000/v2.0")
+                .subject("somchai.jaid@mail.kmutt.ac.th")
+                .expirationTime(new Date(System.currentTimeMillis() + 60_000))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+}
@@ -0,0 +1,105 @@
+package int221.oasip.backendus3.services.mail;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal SMTP server accepting every mail without authentication or TLS, for testing only
+ */
+public class FakeSmtpServer implements Closeable {
+    private final ServerSocket serverSocket;
+    private final Thread acceptThread;
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+    private final List<String> recipients = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger dropAfter = new AtomicInteger(-1);
+
+    public FakeSmtpServer() throws IOException {
+        serverSocket = new ServerSocket(0);
+        acceptThread = new Thread(this::acceptConnections, "fake-smtp");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public List<String> getMessages() {
+        return messages;
+    }
+
+    public List<String> getRecipients() {
+        return recipients;
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    /**
+     * Close the connection once, when the next mail starts after {@code messages} mails are received in total
+     */
+    public void dropConnectionAfter(int messages) {
+        dropAfter.set(messages);
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                connections.incrementAndGet();
+                handle(socket);
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        reply(out, "220 localhost fake SMTP");
+
+        String line;
+        while ((line = in.readLine()) != null) {
+            String command = line.toUpperCase();
+            if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+                reply(out, "250 localhost");
+            } else if (command.startsWith("MAIL FROM:") && dropAfter.get() >= 0 && messages.size() >= dropAfter.get()) {
+                dropAfter.set(-1);
+                return;
+            } else if (command.startsWith("RCPT TO:")) {
+                recipients.add(line.substring("RCPT TO:".length()).replaceAll("[<>]", "").trim());
+                reply(out, "250 OK");
+            } else if (command.startsWith("DATA")) {
+                reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                StringBuilder message = new StringBuilder();
+                while ((line = in.readLine()) != null && !line.equals(".")) {
+                    message.append(line).append("\r\n");
+                }
+                messages.add(message.toString());
+                reply(out, "250 OK");
+            } else if (command.startsWith("QUIT")) {
+                reply(out, "221 Bye");
+                return;
+            } else {
+                reply(out, "250 OK");
+            }
+        }
+    }
+
+    private static void reply(Writer out, String line) throws IOException {
+        out.write(line + "\r\n");
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
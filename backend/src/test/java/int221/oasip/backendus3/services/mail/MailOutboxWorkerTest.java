@@ -0,0 +1,261 @@
+package int221.oasip.backendus3.services.mail;
+
+import int221.oasip.backendus3.configs.MailProps;
+import int221.oasip.backendus3.entities.MailOutbox;
+import int221.oasip.backendus3.repository.MailOutboxRepository;
+import int221.oasip.backendus3.services.MailService;
+import int221.oasip.backendus3.services.cache.CategoryOwnershipListener;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.mail.MessagingException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The worker claims and sends the mails of an H2 outbox through {@link FakeSmtpServer}, driven by hand with a fixed clock
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:outbox;MODE=MySQL;NON_KEYWORDS=USER",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+// createdOn has a default like in 00-schema.sql, Hibernate creates it without one
+@Sql(statements = "ALTER TABLE mailOutbox ALTER COLUMN createdOn SET DEFAULT CURRENT_TIMESTAMP",
+        config = @SqlConfig(transactionMode = SqlConfig.TransactionMode.ISOLATED))
+// the worker runs outside of a transaction, each repository call commits on its own
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MailOutboxWorkerTest {
+    private static final Instant NOW = Instant.parse("2022-05-23T06:30:00Z");
+
+    // entity listener of eventCategoryOwner, its cache is not part of the JPA slice
+    @MockBean
+    private CategoryOwnershipListener ownershipListener;
+    @Autowired
+    private MailOutboxRepository repository;
+    private FakeSmtpServer smtpServer;
+    private MutableClock clock;
+    private MailProps mailProps;
+    private final List<MailService> mailServices = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        smtpServer = new FakeSmtpServer();
+        clock = new MutableClock(NOW);
+        mailProps = new MailProps();
+        mailProps.setHost("localhost");
+        mailProps.setAuth(false);
+        mailProps.setStarttls(false);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException, MessagingException {
+        for (MailService mailService : mailServices) {
+            mailService.close();
+        }
+        smtpServer.close();
+        repository.deleteAll();
+    }
+
+    @Test
+    void sendClaimedMailAndMarkItSent() throws MessagingException {
+        MailOutboxWorker worker = newWorker(smtpServer.getPort());
+        MailOutbox mail = saveMail("first@example.com", MailOutbox.Status.PENDING, NOW);
+
+        List<List<MailOutbox>> batches = worker.claimBatches(1);
+
+        assertEquals(1, batches.size());
+        assertEquals(List.of(mail.getId()), getIds(batches.get(0)));
+        MailOutbox claimed = repository.findById(mail.getId()).orElseThrow();
+        assertEquals(1, claimed.getAttempts());
+        assertEquals(NOW.plus(mailProps.getOutbox().getLease()), claimed.getNextAttemptAt());
+        assertTrue(worker.claimBatches(1).isEmpty());
+
+        worker.send(batches.get(0));
+
+        MailOutbox sent = repository.findById(mail.getId()).orElseThrow();
+        assertEquals(MailOutbox.Status.SENT, sent.getStatus());
+        assertNull(sent.getLastError());
+        assertEquals(List.of("first@example.com"), smtpServer.getRecipients());
+    }
+
+    @Test
+    void retryWithDoubledBackoff() throws IOException, MessagingException {
+        MailOutboxWorker worker = newWorker(getClosedPort());
+        MailOutbox mail = saveMail("first@example.com", MailOutbox.Status.PENDING, NOW);
+
+        claimAndSend(worker);
+
+        MailOutbox retried = repository.findById(mail.getId()).orElseThrow();
+        assertEquals(MailOutbox.Status.PENDING, retried.getStatus());
+        assertEquals(NOW.plusSeconds(30), retried.getNextAttemptAt());
+        assertNotNull(retried.getLastError());
+        assertTrue(worker.claimBatches(1).isEmpty());
+
+        clock.advance(Duration.ofSeconds(30));
+        claimAndSend(worker);
+
+        retried = repository.findById(mail.getId()).orElseThrow();
+        assertEquals(MailOutbox.Status.PENDING, retried.getStatus());
+        assertEquals(2, retried.getAttempts());
+        assertEquals(NOW.plusSeconds(30 + 60), retried.getNextAttemptAt());
+    }
+
+    @Test
+    void failAfterMaxAttempts() throws IOException, MessagingException {
+        mailProps.getOutbox().setMaxAttempts(2);
+        MailOutboxWorker worker = newWorker(getClosedPort());
+        MailOutbox mail = saveMail("first@example.com", MailOutbox.Status.PENDING, NOW);
+
+        claimAndSend(worker);
+        clock.advance(Duration.ofSeconds(30));
+        claimAndSend(worker);
+
+        MailOutbox failed = repository.findById(mail.getId()).orElseThrow();
+        assertEquals(MailOutbox.Status.FAILED, failed.getStatus());
+        assertEquals(2, failed.getAttempts());
+        clock.advance(Duration.ofDays(1));
+        assertTrue(worker.claimBatches(1).isEmpty());
+    }
+
+    @Test
+    void stopClaimingWhileCircuitBreakerIsOpen() throws IOException, MessagingException {
+        mailProps.getOutbox().setBatchSize(1);
+        mailProps.getOutbox().setCircuitBreakerThreshold(2);
+        MailOutboxWorker worker = newWorker(getClosedPort());
+        saveMail("first@example.com", MailOutbox.Status.PENDING, NOW);
+        saveMail("second@example.com", MailOutbox.Status.PENDING, NOW);
+
+        List<List<MailOutbox>> batches = worker.claimBatches(2);
+        assertEquals(2, batches.size());
+        batches.forEach(worker::send);
+
+        saveMail("third@example.com", MailOutbox.Status.PENDING, NOW);
+        saveMail("fourth@example.com", MailOutbox.Status.PENDING, NOW);
+        assertTrue(worker.claimBatches(2).isEmpty());
+
+        // half-open, one batch to probe the server
+        clock.advance(mailProps.getOutbox().getCircuitBreakerOpenDuration());
+        assertEquals(1, worker.claimBatches(2).size());
+    }
+
+    @Test
+    void resendOnlyUnsentMailsAfterLostConnection() throws MessagingException {
+        MailOutboxWorker worker = newWorker(smtpServer.getPort());
+        MailOutbox first = saveMail("first@example.com", MailOutbox.Status.PENDING, NOW);
+        MailOutbox second = saveMail("second@example.com", MailOutbox.Status.PENDING, NOW);
+        MailOutbox third = saveMail("third@example.com", MailOutbox.Status.PENDING, NOW);
+        smtpServer.dropConnectionAfter(1);
+
+        claimAndSend(worker);
+
+        assertEquals(MailOutbox.Status.SENT, repository.findById(first.getId()).orElseThrow().getStatus());
+        assertEquals(NOW.plusSeconds(30), repository.findById(second.getId()).orElseThrow().getNextAttemptAt());
+        assertEquals(NOW.plusSeconds(30), repository.findById(third.getId()).orElseThrow().getNextAttemptAt());
+
+        clock.advance(Duration.ofSeconds(30));
+        claimAndSend(worker);
+
+        assertEquals(List.of(second.getId(), third.getId()), getIds(repository.findAll().stream()
+                .filter(mail -> mail.getAttempts() == 2 && mail.getStatus() == MailOutbox.Status.SENT)
+                .collect(Collectors.toList())));
+        assertEquals(List.of("first@example.com", "second@example.com", "third@example.com"), smtpServer.getRecipients());
+    }
+
+    @Test
+    void purgeCompletedMailsAfterRetention() throws MessagingException {
+        MailOutboxWorker worker = newWorker(smtpServer.getPort());
+        Instant expired = NOW.minus(mailProps.getOutbox().getRetention()).minusSeconds(1);
+        saveMail("sent@example.com", MailOutbox.Status.SENT, expired);
+        saveMail("failed@example.com", MailOutbox.Status.FAILED, expired);
+        MailOutbox recent = saveMail("recent@example.com", MailOutbox.Status.SENT, NOW.minus(Duration.ofDays(1)));
+        MailOutbox pending = saveMail("pending@example.com", MailOutbox.Status.PENDING, expired);
+
+        worker.purgeCompletedMails();
+
+        assertEquals(List.of(recent.getId(), pending.getId()), getIds(repository.findAll()));
+    }
+
+    private MailOutboxWorker newWorker(int port) throws MessagingException {
+        mailProps.setPort(port);
+        MailService mailService = new MailService(mailProps, new SimpleMeterRegistry());
+        mailServices.add(mailService);
+        return new MailOutboxWorker(repository, mailService, mailProps, clock);
+    }
+
+    private void claimAndSend(MailOutboxWorker worker) {
+        for (List<MailOutbox> batch : worker.claimBatches(1)) {
+            worker.send(batch);
+        }
+    }
+
+    private MailOutbox saveMail(String recipient, MailOutbox.Status status, Instant nextAttemptAt) {
+        MailOutbox mail = new MailOutbox();
+        mail.setRecipient(recipient);
+        mail.setSubject("Your booking is complete.");
+        mail.setBody("body");
+        mail.setStatus(status);
+        mail.setNextAttemptAt(nextAttemptAt);
+        return repository.save(mail);
+    }
+
+    private static List<Integer> getIds(List<MailOutbox> mails) {
+        return mails.stream().map(MailOutbox::getId).sorted().collect(Collectors.toList());
+    }
+
+    private static int getClosedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package int221.oasip.backendus3.services.password;
+
+import int221.oasip.backendus3.exceptions.ServiceBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final PasswordEncoder blockingEncoder = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            await();
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            await();
+            return rawPassword.toString().equals(encodedPassword);
+        }
+    };
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        encoder.close();
+    }
+
+    @Test
+    void upgradeOnlyWeakerArgon2Hashes() {
+        encoder = new BoundedPasswordEncoder(blockingEncoder, 16384, 2, 1, 1, Duration.ofSeconds(1), Duration.ofSeconds(5));
+
+        assertTrue(encoder.upgradeEncoding("$argon2id$v=19$m=4096,t=3,p=1$c2FsdA$aGFzaA"));
+        assertTrue(encoder.upgradeEncoding("$argon2id$v=19$m=16384,t=1,p=1$c2FsdA$aGFzaA"));
+        assertFalse(encoder.upgradeEncoding("$argon2id$v=19$m=16384,t=2,p=1$c2FsdA$aGFzaA"));
+        assertFalse(encoder.upgradeEncoding("$argon2id$v=19$m=65536,t=3,p=1$c2FsdA$aGFzaA"));
+        assertFalse(encoder.upgradeEncoding("$2a$10$notAnArgon2Hash"));
+    }
+
+    @Test
+    void rejectWhenQueueIsFull() throws InterruptedException {
+        encoder = new BoundedPasswordEncoder(blockingEncoder, 16384, 2, 1, 1, Duration.ofSeconds(10), Duration.ofSeconds(5));
+
+        // one hash running and one queued
+        callers.submit(() -> encoder.matches("password", "password"));
+        callers.submit(() -> encoder.matches("password", "password"));
+        waitUntil(() -> encoder.getActiveCount() == 1 && encoder.getQueueSize() == 1);
+
+        ServiceBusyException exception = assertThrows(ServiceBusyException.class, () -> encoder.matches("password", "password"));
+        assertEquals(Duration.ofSeconds(5), exception.getRetryAfter());
+    }
+
+    @Test
+    void rejectWhenTimedOut() {
+        encoder = new BoundedPasswordEncoder(blockingEncoder, 16384, 2, 1, 1, Duration.ofMillis(50), Duration.ofSeconds(5));
+
+        assertThrows(ServiceBusyException.class, () -> encoder.encode("password"));
+    }
+
+    private void await() {
+        try {
+            release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.sleep(5);
+        }
+    }
+}
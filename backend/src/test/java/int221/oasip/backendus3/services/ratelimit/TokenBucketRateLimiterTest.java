@@ -0,0 +1,40 @@
+package int221.oasip.backendus3.services.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketRateLimiterTest {
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    @Test
+    void allowBurstThenReject() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(3, Duration.ofSeconds(10), 100);
+
+        assertEquals(0, limiter.tryAcquire("10.0.0.1", 0));
+        assertEquals(0, limiter.tryAcquire("10.0.0.1", SECOND));
+        assertEquals(0, limiter.tryAcquire("10.0.0.1", 2 * SECOND));
+        assertEquals(8 * SECOND, limiter.tryAcquire("10.0.0.1", 2 * SECOND));
+    }
+
+    @Test
+    void refillOneTokenPerInterval() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, Duration.ofSeconds(10), 100);
+        limiter.tryAcquire("10.0.0.1", 0);
+
+        assertTrue(limiter.tryAcquire("10.0.0.1", 9 * SECOND) > 0);
+        assertEquals(0, limiter.tryAcquire("10.0.0.1", 10 * SECOND));
+        assertTrue(limiter.tryAcquire("10.0.0.1", 10 * SECOND) > 0);
+    }
+
+    @Test
+    void separateBucketsByKey() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, Duration.ofSeconds(10), 100);
+
+        assertEquals(0, limiter.tryAcquire("10.0.0.1", 0));
+        assertEquals(0, limiter.tryAcquire("10.0.0.2", 0));
+        assertTrue(limiter.tryAcquire("10.0.0.1", 0) > 0);
+    }
+}
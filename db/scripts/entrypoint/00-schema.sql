@@ -39,8 +39,11 @@ CREATE TABLE IF NOT EXISTS `oasip`.`event` (
   `eventDuration` INT NOT NULL,
   `eventNotes` VARCHAR(500) NULL,
   `eventCategoryId` INT NOT NULL,
+  `eventEndTime` DATETIME GENERATED ALWAYS AS (`eventStartTime` + INTERVAL `eventDuration` MINUTE) STORED,
   PRIMARY KEY (`eventId`),
   INDEX `fk_event_eventCategory_idx` (`eventCategoryId` ASC) VISIBLE,
+  INDEX `event_category_time_idx` (`eventCategoryId` ASC, `eventStartTime` ASC, `eventEndTime` ASC) VISIBLE,
+  INDEX `event_bookingEmail_time_idx` (`bookingEmail` ASC, `eventStartTime` ASC) VISIBLE,
   CONSTRAINT `fk_event_eventCategory`
     FOREIGN KEY (`eventCategoryId`)
     REFERENCES `oasip`.`eventCategory` (`eventCategoryId`)
@@ -92,8 +95,12 @@ CREATE TABLE IF NOT EXISTS `oasip`.`file` (
   `name` TEXT NOT NULL,
   `type` VARCHAR(255) NOT NULL,
   `eventId` INT NOT NULL,
+  `sha256` CHAR(64) NULL,
+  `size` BIGINT NULL,
   PRIMARY KEY (`id`),
   INDEX `fk_file_event1_idx` (`eventId` ASC) VISIBLE,
+  INDEX `file_sha256_idx` (`sha256` ASC) VISIBLE,
+  INDEX `file_bucketId_name_idx` (`bucketId` ASC, `name`(255) ASC) VISIBLE,
   CONSTRAINT `fk_file_event1`
     FOREIGN KEY (`eventId`)
     REFERENCES `oasip`.`event` (`eventId`)
@@ -102,6 +109,24 @@ CREATE TABLE IF NOT EXISTS `oasip`.`file` (
 ENGINE = InnoDB;
 
 
+-- -----------------------------------------------------
+-- Table `oasip`.`mailOutbox`
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `oasip`.`mailOutbox` (
+  `mailOutboxId` INT NOT NULL AUTO_INCREMENT,
+  `recipient` VARCHAR(50) NOT NULL,
+  `subject` VARCHAR(255) NOT NULL,
+  `body` TEXT NOT NULL,
+  `status` ENUM('PENDING', 'SENT', 'FAILED') NOT NULL DEFAULT 'PENDING',
+  `attempts` INT NOT NULL DEFAULT 0,
+  `nextAttemptAt` DATETIME NOT NULL,
+  `lastError` VARCHAR(500) NULL,
+  `createdOn` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`mailOutboxId`),
+  INDEX `mailOutbox_status_nextAttemptAt_idx` (`status` ASC, `nextAttemptAt` ASC) VISIBLE)
+ENGINE = InnoDB;
+
+
 SET SQL_MODE=@OLD_SQL_MODE;
 SET FOREIGN_KEY_CHECKS=@OLD_FOREIGN_KEY_CHECKS;
 SET UNIQUE_CHECKS=@OLD_UNIQUE_CHECKS;
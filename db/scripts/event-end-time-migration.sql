@@ -0,0 +1,8 @@
+-- Upgrade an existing oasip schema created before eventEndTime became a real column.
+-- New deployments get the same column and indexes from entrypoint/00-schema.sql.
+USE `oasip`;
+
+ALTER TABLE `event`
+  ADD COLUMN `eventEndTime` DATETIME GENERATED ALWAYS AS (`eventStartTime` + INTERVAL `eventDuration` MINUTE) STORED,
+  ADD INDEX `event_category_time_idx` (`eventCategoryId` ASC, `eventStartTime` ASC, `eventEndTime` ASC) VISIBLE,
+  ADD INDEX `event_bookingEmail_time_idx` (`bookingEmail` ASC, `eventStartTime` ASC) VISIBLE;
@@ -0,0 +1,10 @@
+-- Upgrade an existing oasip schema for the content-addressed file store.
+-- Existing rows keep a NULL sha256 and are still read from uploads/<bucketId>/<name>.
+-- New deployments get the same columns and indexes from entrypoint/00-schema.sql.
+USE `oasip`;
+
+ALTER TABLE `file`
+  ADD COLUMN `sha256` CHAR(64) NULL,
+  ADD COLUMN `size` BIGINT NULL,
+  ADD INDEX `file_sha256_idx` (`sha256` ASC) VISIBLE,
+  ADD INDEX `file_bucketId_name_idx` (`bucketId` ASC, `name`(255) ASC) VISIBLE;
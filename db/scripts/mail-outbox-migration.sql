@@ -0,0 +1,20 @@
+-- Add the mail outbox to an existing oasip schema.
+-- New deployments get the same table from entrypoint/00-schema.sql.
+USE `oasip`;
+
+-- -----------------------------------------------------
+-- Table `oasip`.`mailOutbox`
+-- -----------------------------------------------------
+CREATE TABLE IF NOT EXISTS `oasip`.`mailOutbox` (
+  `mailOutboxId` INT NOT NULL AUTO_INCREMENT,
+  `recipient` VARCHAR(50) NOT NULL,
+  `subject` VARCHAR(255) NOT NULL,
+  `body` TEXT NOT NULL,
+  `status` ENUM('PENDING', 'SENT', 'FAILED') NOT NULL DEFAULT 'PENDING',
+  `attempts` INT NOT NULL DEFAULT 0,
+  `nextAttemptAt` DATETIME NOT NULL,
+  `lastError` VARCHAR(500) NULL,
+  `createdOn` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`mailOutboxId`),
+  INDEX `mailOutbox_status_nextAttemptAt_idx` (`status` ASC, `nextAttemptAt` ASC) VISIBLE)
+ENGINE = InnoDB;